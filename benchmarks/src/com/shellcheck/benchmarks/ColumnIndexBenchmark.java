@@ -0,0 +1,92 @@
+package com.shellcheck.benchmarks;
+
+import com.shellcheck.utils.ShellcheckColumnIndex;
+import com.shellcheck.utils.ShellcheckJson;
+import com.shellcheck.utils.ShellcheckResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the offsets of all issues of a script, as the annotator does once per apply, on scripts with tab
+ * indented short and long lines and issues spread over each line: the column index against the per issue rescan
+ * it replaced. Line offsets come from a table built once, like those the document keeps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnIndexBenchmark {
+    @Param({"80", "2000"})
+    public int lineLength;
+
+    @Param({"true", "false"})
+    public boolean tabs;
+
+    @Param({"4", "100"})
+    public int issuesPerLine;
+
+    private String script;
+    private int lineCount;
+    private int[] lineStarts;
+    private List<ShellcheckResult.Issue> issues;
+
+    @Setup
+    public void setUp() throws IOException {
+        int lines = 400;
+        script = Payloads.script(lines, lineLength, tabs);
+        lineCount = ShellcheckColumnIndex.of(script).getLineCount();
+        lineStarts = new int[lineCount + 1];
+        for (int line = 1, i = 0; i < script.length(); i++) {
+            if (script.charAt(i) == '\n') {
+                lineStarts[line++] = i + 1;
+            }
+        }
+        lineStarts[lineCount] = script.length() + 1;
+        issues = new ArrayList<>();
+        String output = Payloads.output("deploy.sh", issuesPerLine * (lines - 1), false, issuesPerLine, lineLength);
+        ShellcheckJson.parse(new StringReader(output), issues::add);
+    }
+
+    @Benchmark
+    public void columnIndex(Blackhole blackhole) {
+        ShellcheckColumnIndex index = new ShellcheckColumnIndex(script, lineCount, this::lineStart, this::lineEnd);
+        for (ShellcheckResult.Issue issue : issues) {
+            ShellcheckColumnIndex.Line line = index.getLine(issue.line - 1);
+            blackhole.consume(line.offsetOf(issue.column - 1, issue.singleColumnTabs).orElse(line.start));
+            blackhole.consume(line.offsetOf(issue.endColumn - 1, issue.singleColumnTabs).orElse(line.end));
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (ShellcheckResult.Issue issue : issues) {
+            blackhole.consume(new LegacyErrorRange(script, this::lineStart, this::lineEnd, issue));
+        }
+    }
+
+    private int lineStart(int line) {
+        return lineStarts[line];
+    }
+
+    private int lineEnd(int line) {
+        return lineStarts[line + 1] - 1;
+    }
+}
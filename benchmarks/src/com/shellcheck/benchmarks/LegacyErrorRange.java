@@ -0,0 +1,44 @@
+package com.shellcheck.benchmarks;
+
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.OptionalInt;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The offset resolution of the annotator before the column index, kept as the baseline of
+ * {@link ColumnIndexBenchmark}: every issue looks up its lines and rescans them from the start to expand tabs,
+ * once for the start and once for the end column.
+ */
+final class LegacyErrorRange {
+    final int start;
+    final int end;
+
+    LegacyErrorRange(@NotNull CharSequence text, @NotNull IntUnaryOperator lineStart, @NotNull IntUnaryOperator lineEnd,
+                     @NotNull ShellcheckResult.Issue issue) {
+        int line = issue.line - 1;
+        int endLine = issue.endLine == 0 ? line : issue.endLine - 1;
+        int beginLineStart = lineStart.applyAsInt(line);
+        int beginLineEnd = lineEnd.applyAsInt(line);
+        start = appendNormalizeColumn(text, beginLineStart, beginLineEnd, issue.column - 1).orElse(beginLineStart);
+
+        int endColumn = issue.endColumn == 0 ? issue.column : issue.endColumn;
+        int endLineStart = lineStart.applyAsInt(endLine);
+        int endLineEnd = lineEnd.applyAsInt(endLine);
+        end = appendNormalizeColumn(text, endLineStart, endLineEnd, endColumn - 1).orElse(endLineEnd);
+    }
+
+    @NotNull
+    private static OptionalInt appendNormalizeColumn(@NotNull CharSequence text, int lineStart, int lineEnd, int column) {
+        int col = 0;
+        for (int i = lineStart; i < lineEnd; i++) {
+            char c = text.charAt(i);
+            col += (c == '\t' ? 8 : 1);
+            if (col > column) {
+                return OptionalInt.of(i);
+            }
+        }
+        return OptionalInt.empty();
+    }
+}
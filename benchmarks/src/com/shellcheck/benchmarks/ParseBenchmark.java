@@ -0,0 +1,48 @@
+package com.shellcheck.benchmarks;
+
+import com.shellcheck.utils.ShellcheckJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming parse of shellcheck output, the work done on the output reader thread of every run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"10", "1000", "10000", "50000"})
+    public int issues;
+
+    @Param({"json", "json1"})
+    public String format;
+
+    private String output;
+
+    @Setup
+    public void setUp() {
+        output = Payloads.output("/project/scripts/deploy.sh", issues, format.equals("json1"));
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws IOException {
+        ShellcheckJson.parse(new StringReader(output), blackhole::consume);
+    }
+}
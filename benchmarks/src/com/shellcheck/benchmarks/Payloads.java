@@ -0,0 +1,76 @@
+package com.shellcheck.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Generated shellcheck output and scripts with the shape of real ones: mixed levels and codes, long messages,
+ * and json1 issues with fixes.
+ */
+final class Payloads {
+    private static final String[] LEVELS = {"error", "warning", "info", "style"};
+    private static final int[] CODES = {2086, 2034, 2046, 2006, 2155, 1091, 2164, 2181};
+
+    private Payloads() {
+    }
+
+    /**
+     * Output of shellcheck for the file in the json or json1 format.
+     */
+    @NotNull
+    static String output(@NotNull String file, int issues, boolean json1) {
+        return output(file, issues, json1, 4, 48);
+    }
+
+    /**
+     * Output with the issues spread evenly over the first columns of consecutive lines.
+     */
+    @NotNull
+    static String output(@NotNull String file, int issues, boolean json1, int issuesPerLine, int columns) {
+        int spacing = Math.max(1, columns / issuesPerLine);
+        StringBuilder json = new StringBuilder(issues * (json1 ? 420 : 260));
+        json.append(json1 ? "{\"comments\":[" : "[");
+        for (int i = 0; i < issues; i++) {
+            int line = 1 + i / issuesPerLine;
+            int column = 1 + (i % issuesPerLine) * spacing;
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"file\":\"").append(file).append('"')
+                    .append(",\"line\":").append(line).append(",\"endLine\":").append(line)
+                    .append(",\"column\":").append(column).append(",\"endColumn\":").append(column + 6)
+                    .append(",\"level\":\"").append(LEVELS[i % LEVELS.length]).append('"')
+                    .append(",\"code\":").append(CODES[i % CODES.length])
+                    .append(",\"message\":\"Double quote to prevent globbing and word splitting of $value number ").append(i).append(".\"");
+            if (json1) {
+                json.append(",\"fix\":{\"replacements\":[")
+                        .append("{\"line\":").append(line).append(",\"endLine\":").append(line)
+                        .append(",\"column\":").append(column).append(",\"endColumn\":").append(column)
+                        .append(",\"precedence\":7,\"insertionPoint\":\"afterEnd\",\"replacement\":\"\\\"\"},")
+                        .append("{\"line\":").append(line).append(",\"endLine\":").append(line)
+                        .append(",\"column\":").append(column + 6).append(",\"endColumn\":").append(column + 6)
+                        .append(",\"precedence\":7,\"insertionPoint\":\"beforeStart\",\"replacement\":\"\\\"\"}]}");
+            } else {
+                json.append(",\"fix\":null");
+            }
+            json.append('}');
+        }
+        json.append(json1 ? "]}" : "]");
+        return json.toString();
+    }
+
+    /**
+     * A script of the lines, each indented with tabs when asked to and padded to the length with variable uses.
+     */
+    @NotNull
+    static String script(int lines, int lineLength, boolean tabs) {
+        StringBuilder script = new StringBuilder(lines * (lineLength + 1));
+        script.append("#!/bin/bash\n");
+        for (int i = 1; i < lines; i++) {
+            int start = script.length();
+            script.append(tabs ? "\t\t" : "    ").append("echo");
+            while (script.length() - start < lineLength) {
+                script.append(tabs && i % 3 == 0 ? "\t$value" : " $value");
+            }
+            script.append('\n');
+        }
+        return script.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.shellcheck.benchmarks;
+
+import com.shellcheck.utils.ShellcheckJson;
+import com.shellcheck.utils.ShellcheckProcess;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.Utf8Encoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A single file check the way the plugin runs it: spawn, content written to stdin, stdout parsed while it
+ * arrives. Runs {@code tools/stub-shellcheck}, or the executable in {@code SHELLCHECK_STUB}, which replays
+ * generated output after {@code STUB_SHELLCHECK_DELAY} seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+    @Param({"10", "1000"})
+    public int issues;
+
+    @Param({"0"})
+    public String delay;
+
+    private String script;
+    private List<String> command;
+    private ProcessBuilder processBuilder;
+
+    @Setup
+    public void setUp() {
+        script = Payloads.script(200, 80, true);
+        String stub = System.getenv("SHELLCHECK_STUB");
+        command = new ArrayList<>();
+        command.add(stub != null ? stub : "tools/stub-shellcheck");
+        command.addAll(ShellcheckJson.CHECK_OPTIONS);
+        command.add("-");
+        processBuilder = new ProcessBuilder(command);
+        processBuilder.environment().put("STUB_SHELLCHECK_ISSUES", Integer.toString(issues));
+        processBuilder.environment().put("STUB_SHELLCHECK_DELAY", delay);
+    }
+
+    @Benchmark
+    public List<ShellcheckResult.Issue> runCheck() throws IOException, TimeoutException {
+        List<ShellcheckResult.Issue> result = new ArrayList<>();
+        Process process = processBuilder.start();
+        ShellcheckProcess shellcheck = ShellcheckProcess.attach(process, result::add);
+        try (OutputStream stdin = process.getOutputStream()) {
+            Utf8Encoder.forCurrentThread().encode(script, stdin::write);
+        }
+        if (!shellcheck.waitFor(TimeUnit.MINUTES.toMillis(1L), 10L, () -> false)) {
+            throw new IOException("Cannot parse stub output: " + shellcheck.getStdoutPrefix() + shellcheck.getStderr());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package com.shellcheck.cli;
+
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckSeverity;
+import org.jetbrains.annotations.NotNull;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checkstyle XML, understood by most CI servers; only files with issues are listed.
+ */
+class CheckstyleReportWriter implements ShellcheckReportWriter {
+    private final Writer out;
+    private final boolean treatAllIssuesAsWarnings;
+    private XMLStreamWriter xml;
+
+    CheckstyleReportWriter(@NotNull Writer out, boolean treatAllIssuesAsWarnings) {
+        this.out = out;
+        this.treatAllIssuesAsWarnings = treatAllIssuesAsWarnings;
+    }
+
+    @Override
+    public void start() throws IOException {
+        try {
+            xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("checkstyle");
+            xml.writeAttribute("version", "4.3");
+            xml.writeCharacters("\n");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void file(@NotNull String path, @NotNull List<ShellcheckResult.Issue> issues) throws IOException {
+        if (issues.isEmpty()) {
+            return;
+        }
+        try {
+            xml.writeStartElement("file");
+            xml.writeAttribute("name", path);
+            xml.writeCharacters("\n");
+            for (ShellcheckResult.Issue issue : issues) {
+                xml.writeEmptyElement("error");
+                xml.writeAttribute("line", String.valueOf(issue.line));
+                xml.writeAttribute("column", String.valueOf(issue.column));
+                xml.writeAttribute("severity", ShellcheckSeverity.of(issue, treatAllIssuesAsWarnings).name().toLowerCase(Locale.ROOT));
+                xml.writeAttribute("message", issue.getFormattedMessage());
+                xml.writeAttribute("source", "ShellCheck." + (issue.code == null ? "none" : "SC" + issue.code));
+                xml.writeCharacters("\n");
+            }
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.shellcheck.cli;
+
+import com.google.gson.stream.JsonWriter;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckSeverity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * SARIF 2.1.0 with a single run; results are streamed into its result array. Locations are relative to
+ * the {@code %SRCROOT%} base, the working directory of the check.
+ */
+class SarifReportWriter implements ShellcheckReportWriter {
+    private static final String WIKI_URI = "https://www.shellcheck.net/wiki/";
+
+    private final JsonWriter json;
+    private final String srcRoot;
+    private final boolean treatAllIssuesAsWarnings;
+
+    SarifReportWriter(@NotNull Writer out, @NotNull String srcRootUri, boolean treatAllIssuesAsWarnings) {
+        this.json = new JsonWriter(out);
+        this.srcRoot = srcRootUri;
+        this.treatAllIssuesAsWarnings = treatAllIssuesAsWarnings;
+    }
+
+    @Override
+    public void start() throws IOException {
+        json.beginObject();
+        json.name("version").value("2.1.0");
+        json.name("$schema").value("https://json.schemastore.org/sarif-2.1.0.json");
+        json.name("runs").beginArray();
+        json.beginObject();
+        json.name("tool").beginObject()
+                .name("driver").beginObject()
+                .name("name").value("ShellCheck")
+                .name("informationUri").value("https://www.shellcheck.net")
+                .endObject()
+                .endObject();
+        json.name("originalUriBaseIds").beginObject()
+                .name("%SRCROOT%").beginObject().name("uri").value(srcRoot).endObject()
+                .endObject();
+        json.name("results").beginArray();
+    }
+
+    @Override
+    public void file(@NotNull String path, @NotNull List<ShellcheckResult.Issue> issues) throws IOException {
+        for (ShellcheckResult.Issue issue : issues) {
+            String rule = issue.code == null ? "none" : "SC" + issue.code;
+            json.beginObject();
+            json.name("ruleId").value(rule);
+            json.name("level").value(level(ShellcheckSeverity.of(issue, treatAllIssuesAsWarnings)));
+            json.name("message").beginObject().name("text").value(issue.message.trim()).endObject();
+            if (issue.code != null) {
+                json.name("helpUri").value(WIKI_URI + rule);
+            }
+            json.name("locations").beginArray().beginObject()
+                    .name("physicalLocation").beginObject()
+                    .name("artifactLocation").beginObject()
+                    .name("uri").value(path)
+                    .name("uriBaseId").value("%SRCROOT%")
+                    .endObject()
+                    .name("region").beginObject()
+                    .name("startLine").value(Math.max(1, issue.line))
+                    .name("startColumn").value(Math.max(1, issue.column))
+                    .name("endLine").value(Math.max(issue.line, issue.endLine))
+                    .name("endColumn").value(Math.max(1, issue.endColumn))
+                    .endObject()
+                    .endObject()
+                    .endObject().endArray();
+            json.endObject();
+        }
+        json.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        json.endArray();
+        json.endObject();
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    @NotNull
+    private static String level(@NotNull ShellcheckSeverity severity) {
+        switch (severity) {
+            case ERROR:
+                return "error";
+            case WARNING:
+                return "warning";
+            default:
+                return "note";
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.shellcheck.cli;
+
+import com.shellcheck.utils.ShellcheckBatchRun;
+import com.shellcheck.utils.ShellcheckColumns;
+import com.shellcheck.utils.ShellcheckJson;
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks a group of files with a single shellcheck process, like the batch runs of the plugin; when the
+ * process fails, e.g. because one file cannot be read, the files are checked one by one. Reports get
+ * character columns: the json1 format is used when the executable knows it, otherwise the tab expanded
+ * columns of the json format are converted.
+ */
+class ShellcheckBatch {
+    private static final long TIME_OUT = TimeUnit.MINUTES.toMillis(5L);
+    private static final long POLL_INTERVAL = 100L;
+    private static final File NULL_FILE = new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    private final String shellcheckExe;
+    private final File cwd;
+    private final boolean json1;
+
+    ShellcheckBatch(@NotNull String shellcheckExe, @NotNull File cwd) {
+        this.shellcheckExe = shellcheckExe;
+        this.cwd = cwd;
+        this.json1 = supportsJson1(shellcheckExe, cwd);
+    }
+
+    /**
+     * @param options filtering options shared by the files, see {@link com.shellcheck.utils.ShellcheckOptions}
+     * @return a result per file, in the order of the files
+     */
+    @NotNull
+    Map<String, ShellcheckResult> check(@NotNull List<String> options, @NotNull List<String> files) {
+        Map<String, ShellcheckResult> results = new LinkedHashMap<>();
+        try {
+            results.putAll(run(options, files));
+            if (!json1) {
+                results.forEach(this::toCharacterColumns);
+            }
+            return results;
+        } catch (IOException e) {
+            if (files.size() == 1) {
+                results.put(files.get(0), new ShellcheckResult(e.getMessage()));
+                return results;
+            }
+        }
+        for (String file : files) {
+            results.putAll(check(options, Collections.singletonList(file)));
+        }
+        return results;
+    }
+
+    @NotNull
+    private Map<String, ShellcheckResult> run(@NotNull List<String> options, @NotNull List<String> files) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(shellcheckExe);
+        command.addAll(ShellcheckJson.checkOptions(json1));
+        command.addAll(options);
+        // relative paths like -x.sh would be taken for options
+        command.add("--");
+        command.addAll(files);
+        Process process = new ProcessBuilder(command).directory(cwd).start();
+        process.getOutputStream().close();
+        ShellcheckBatchRun run = new ShellcheckBatchRun(process, files);
+        try {
+            return run.getResults(run.getProcess().waitFor(TIME_OUT, POLL_INTERVAL, () -> false));
+        } catch (TimeoutException | CancellationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void toCharacterColumns(@NotNull String file, @NotNull ShellcheckResult result) {
+        if (result.getIssues().isEmpty()) {
+            return;
+        }
+        try {
+            String text = new String(Files.readAllBytes(new File(cwd, file).toPath()), StandardCharsets.UTF_8);
+            ShellcheckColumns.toCharacterColumns(text, result.getIssues());
+        } catch (IOException e) {
+            // the report keeps the columns of shellcheck
+        }
+    }
+
+    /**
+     * Whether the executable knows the json1 format, checked on an empty script read from stdin.
+     */
+    private static boolean supportsJson1(@NotNull String shellcheckExe, @NotNull File cwd) {
+        try {
+            Process process = new ProcessBuilder(shellcheckExe, "--format=json1", "-")
+                    .directory(cwd)
+                    .redirectErrorStream(true)
+                    .redirectOutput(NULL_FILE)
+                    .start();
+            process.getOutputStream().close();
+            if (!process.waitFor(TIME_OUT, TimeUnit.MILLISECONDS)) {
+                process.destroy();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.shellcheck.cli;
+
+import com.shellcheck.utils.ShellScripts;
+import com.shellcheck.utils.ShellcheckOptions;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckSeverity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Checks all shell scripts below the given paths the way the plugin does, for CI. Scripts are found while
+ * walking the tree, checked in groups by parallel shellcheck processes and written to the report as each
+ * group completes; at most two groups per process wait for the report, so memory stays flat on large trees.
+ * Files are grouped by their filtering options: the project and directory options of the settings, then the
+ * options of the command line; shellcheck reads the {@code .shellcheckrc} next to the files itself.
+ * <p>
+ * Exit code: 0 without error severity issues, 1 with them, 2 when files could not be checked or on usage errors.
+ */
+public class ShellcheckCli {
+    private static final Set<String> SKIPPED_DIRECTORIES = new HashSet<>(Arrays.asList(".git", ".hg", ".svn", ".idea"));
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final String USAGE = "Usage: shellcheck-cli [options] [path...]\n"
+            + "  --shellcheck <file>      shellcheck executable (default: from the settings, else shellcheck)\n"
+            + "  --settings <file>        plugin settings to read (default: " + ShellcheckCliSettings.SETTINGS_FILE + " if present)\n"
+            + "  --extensions <list>      comma separated script extensions (default: from the settings, else sh,bash)\n"
+            + "  --warnings               treat all issues as warnings\n"
+            + "  --severity <level>       minimum severity: error, warning, info or style\n"
+            + "  --exclude <codes>        comma separated checks to exclude, e.g. SC2034,SC2086\n"
+            + "  --enable <checks>        comma separated optional checks to enable\n"
+            + "  --shell <dialect>        shell dialect: sh, bash, dash, ksh or busybox\n"
+            + "  --format <format>        checkstyle or sarif (default: checkstyle)\n"
+            + "  --output <file>          report file (default: standard output)\n"
+            + "  --jobs <n>               parallel shellcheck processes (default: number of cores)\n"
+            + "  --batch-size <n>         files per shellcheck process (default: " + DEFAULT_BATCH_SIZE + ")\n";
+
+    private final ShellcheckCliSettings settings = new ShellcheckCliSettings();
+    private final List<String> paths = new ArrayList<>();
+    private String format = "checkstyle";
+    private String output;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ShellcheckOptions projectOptions = ShellcheckOptions.NONE;
+    private final Map<String, ShellcheckOptions> directoryOptions = new LinkedHashMap<>();
+    private ShellcheckOptions commandLineOptions = ShellcheckOptions.NONE;
+    private final Map<String, List<String>> optionsByDirectory = new HashMap<>();
+
+    private final AtomicInteger checkedFiles = new AtomicInteger();
+    private final AtomicInteger issueCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = new ShellcheckCli().run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            exitCode = 2;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            exitCode = 2;
+        }
+        System.exit(exitCode);
+    }
+
+    int run(@NotNull String[] args) throws IOException {
+        parseArguments(args);
+        Set<String> extensions = ShellScripts.parseExtensions(settings.scriptExtensions);
+        File cwd = new File(".").getAbsoluteFile();
+
+        long start = System.nanoTime();
+        try (OutputStream stream = output != null ? new FileOutputStream(output) : new UncloseableOutputStream(System.out);
+             Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            ShellcheckReportWriter report = format.equals("sarif")
+                    ? new SarifReportWriter(out, cwd.toPath().normalize().toUri().toString(), settings.treatAllIssuesAsWarnings)
+                    : new CheckstyleReportWriter(out, settings.treatAllIssuesAsWarnings);
+            report.start();
+            check(cwd, extensions, report);
+            report.finish();
+        }
+        System.err.printf("Checked %d files in %.1f s: %d issues, %d errors%s%n", checkedFiles.get(),
+                (System.nanoTime() - start) / 1e9, issueCount.get(), errorCount.get(),
+                failedFiles.get() > 0 ? ", " + failedFiles.get() + " files could not be checked" : "");
+        return failedFiles.get() > 0 ? 2 : errorCount.get() > 0 ? 1 : 0;
+    }
+
+    private void parseArguments(@NotNull String[] args) throws IOException {
+        String settingsFile = null;
+        String shellcheckExecutable = null;
+        String extensions = null;
+        boolean warnings = false;
+        StringBuilder filterOptions = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--shellcheck":
+                    shellcheckExecutable = value(args, ++i, arg);
+                    break;
+                case "--settings":
+                    settingsFile = value(args, ++i, arg);
+                    break;
+                case "--extensions":
+                    extensions = value(args, ++i, arg);
+                    break;
+                case "--warnings":
+                    warnings = true;
+                    break;
+                case "--severity":
+                case "--exclude":
+                case "--enable":
+                case "--shell":
+                    filterOptions.append(' ').append(arg).append('=').append(value(args, ++i, arg));
+                    break;
+                case "--format":
+                    format = value(args, ++i, arg);
+                    if (!format.equals("checkstyle") && !format.equals("sarif")) {
+                        throw new IllegalArgumentException("Unknown format " + format);
+                    }
+                    break;
+                case "--output":
+                    output = value(args, ++i, arg);
+                    break;
+                case "--jobs":
+                    jobs = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--batch-size":
+                    batchSize = positive(value(args, ++i, arg), arg);
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    paths.add(arg);
+            }
+        }
+        if (paths.isEmpty()) {
+            paths.add(".");
+        }
+        if (settingsFile != null) {
+            settings.load(new File(settingsFile));
+        } else if (new File(ShellcheckCliSettings.SETTINGS_FILE).isFile()) {
+            settings.load(new File(ShellcheckCliSettings.SETTINGS_FILE));
+        }
+        if (shellcheckExecutable != null) {
+            settings.shellcheckExecutable = shellcheckExecutable;
+        }
+        if (extensions != null) {
+            settings.scriptExtensions = extensions;
+        }
+        settings.treatAllIssuesAsWarnings |= warnings;
+        commandLineOptions = ShellcheckOptions.parse(filterOptions.toString());
+        projectOptions = parseSettingsOptions(settings.checkOptions, "checkOptions");
+        for (Map.Entry<String, String> entry : settings.directoryOptions.entrySet()) {
+            String directory = entry.getKey().replace('\\', '/').replaceAll("^/+|/+$", "");
+            directoryOptions.put(directory, parseSettingsOptions(entry.getValue(), "directoryOptions of " + entry.getKey()));
+        }
+    }
+
+    @NotNull
+    private static ShellcheckOptions parseSettingsOptions(@NotNull String options, @NotNull String name) throws IOException {
+        try {
+            return ShellcheckOptions.parse(options);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid " + name + " in the settings: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Options of a file relative to the working directory, which is the project directory the settings are
+     * relative to; cached per directory, the walk runs on one thread.
+     */
+    @NotNull
+    private List<String> optionsOf(@NotNull String file) {
+        int slash = file.lastIndexOf('/');
+        String directory = slash >= 0 ? file.substring(0, slash) : "";
+        return optionsByDirectory.computeIfAbsent(directory, dir -> {
+            ShellcheckOptions options = projectOptions;
+            for (Map.Entry<String, ShellcheckOptions> entry : directoryOptions.entrySet()) {
+                if (entry.getKey().isEmpty() || dir.equals(entry.getKey()) || dir.startsWith(entry.getKey() + "/")) {
+                    options = options.with(entry.getValue());
+                }
+            }
+            return options.with(commandLineOptions).toArguments();
+        });
+    }
+
+    @NotNull
+    private static String value(@NotNull String[] args, int index, @NotNull String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value of " + option);
+        }
+        return args[index];
+    }
+
+    private static int positive(@NotNull String value, @NotNull String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid value of " + option + ": " + value);
+    }
+
+    private void check(@NotNull File cwd, @NotNull Set<String> extensions, @NotNull ShellcheckReportWriter report) throws IOException {
+        ShellcheckBatch batch = new ShellcheckBatch(settings.shellcheckExecutable, cwd);
+        Path root = cwd.toPath().normalize();
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        Semaphore pending = new Semaphore(jobs * 2);
+        IOException[] reportFailure = new IOException[1];
+        Map<List<String>, List<String>> groups = new LinkedHashMap<>();
+        Consumer<List<String>> submit = options -> {
+            List<String> files = groups.remove(options);
+            pending.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    Map<String, ShellcheckResult> results = batch.check(options, files);
+                    synchronized (report) {
+                        if (reportFailure[0] == null) {
+                            write(report, results);
+                        }
+                    }
+                } catch (IOException e) {
+                    synchronized (report) {
+                        reportFailure[0] = e;
+                    }
+                } finally {
+                    pending.release();
+                }
+            });
+        };
+        try {
+            for (String path : paths) {
+                Files.walkFileTree(Paths.get(path), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        Path name = dir.getFileName();
+                        return name != null && SKIPPED_DIRECTORIES.contains(name.toString())
+                                ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && isShellScript(file, extensions)) {
+                            String path = relativize(root, file).replace(File.separatorChar, '/');
+                            List<String> options = optionsOf(path);
+                            List<String> group = groups.computeIfAbsent(options, o -> new ArrayList<>(batchSize));
+                            group.add(path);
+                            if (group.size() == batchSize) {
+                                submit.accept(options);
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        System.err.println("Cannot read " + file + ": " + e.getMessage());
+                        failedFiles.incrementAndGet();
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            for (List<String> options : new ArrayList<>(groups.keySet())) {
+                submit.accept(options);
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (report) {
+            if (reportFailure[0] != null) {
+                throw reportFailure[0];
+            }
+        }
+    }
+
+    private void write(@NotNull ShellcheckReportWriter report, @NotNull Map<String, ShellcheckResult> results) throws IOException {
+        for (Map.Entry<String, ShellcheckResult> entry : results.entrySet()) {
+            ShellcheckResult result = entry.getValue();
+            checkedFiles.incrementAndGet();
+            if (result.getErrorOutput() != null && !result.getErrorOutput().isEmpty()) {
+                System.err.println("Cannot check " + entry.getKey() + ": " + result.getErrorOutput());
+                failedFiles.incrementAndGet();
+                continue;
+            }
+            for (ShellcheckResult.Issue issue : result.getIssues()) {
+                issueCount.incrementAndGet();
+                if (ShellcheckSeverity.of(issue, settings.treatAllIssuesAsWarnings) == ShellcheckSeverity.ERROR) {
+                    errorCount.incrementAndGet();
+                }
+            }
+            report.file(entry.getKey(), result.getIssues());
+        }
+    }
+
+    /**
+     * Paths below the working directory are passed relative to it, keeping command lines and reports short.
+     */
+    @NotNull
+    private static String relativize(@NotNull Path root, @NotNull Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        return absolute.startsWith(root) ? root.relativize(absolute).toString() : absolute.toString();
+    }
+
+    private static boolean isShellScript(@NotNull Path file, @NotNull Set<String> extensions) {
+        if (ShellScripts.hasExtension(file.getFileName().toString(), extensions)) {
+            return true;
+        }
+        byte[] bytes = new byte[ShellScripts.SHEBANG_LIMIT];
+        int length = 0;
+        try (InputStream stream = Files.newInputStream(file)) {
+            int count;
+            while (length < bytes.length && (count = stream.read(bytes, length, bytes.length - length)) > 0) {
+                length += count;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return ShellScripts.isShellShebang(new String(bytes, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Keeps standard output open when the report writer is closed, for the summary and the exit.
+     */
+    private static class UncloseableOutputStream extends FilterOutputStream {
+        UncloseableOutputStream(@NotNull OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(@NotNull byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.shellcheck.cli;
+
+import org.jetbrains.annotations.NotNull;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The plugin settings the command line honours, read from the {@code shellcheckPlugin.xml} the IDE stores
+ * in the {@code .idea} directory of a project; command line options override them.
+ */
+class ShellcheckCliSettings {
+    static final String SETTINGS_FILE = ".idea/shellcheckPlugin.xml";
+    private static final String COMPONENT_NAME = "ShellcheckProjectComponent";
+
+    String shellcheckExecutable = "shellcheck";
+    boolean treatAllIssuesAsWarnings;
+    String scriptExtensions = "sh,bash";
+    String checkOptions = "";
+    final Map<String, String> directoryOptions = new TreeMap<>();
+
+    void load(@NotNull File file) throws IOException {
+        NodeList components;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            components = factory.newDocumentBuilder().parse(file).getElementsByTagName("component");
+        } catch (Exception e) {
+            throw new IOException("Cannot read settings " + file + ": " + e.getMessage(), e);
+        }
+        for (int i = 0; i < components.getLength(); i++) {
+            Element component = (Element) components.item(i);
+            if (!COMPONENT_NAME.equals(component.getAttribute("name"))) {
+                continue;
+            }
+            NodeList options = component.getElementsByTagName("option");
+            for (int j = 0; j < options.getLength(); j++) {
+                Element option = (Element) options.item(j);
+                if ("directoryOptions".equals(option.getAttribute("name"))) {
+                    NodeList entries = option.getElementsByTagName("entry");
+                    for (int k = 0; k < entries.getLength(); k++) {
+                        Element entry = (Element) entries.item(k);
+                        directoryOptions.put(entry.getAttribute("key"), entry.getAttribute("value"));
+                    }
+                } else {
+                    apply(option.getAttribute("name"), option.getAttribute("value"));
+                }
+            }
+        }
+    }
+
+    private void apply(@NotNull String name, @NotNull String value) {
+        switch (name) {
+            case "shellcheckExecutable":
+                if (!value.isEmpty()) {
+                    shellcheckExecutable = value;
+                }
+                break;
+            case "treatAllIssuesAsWarnings":
+                treatAllIssuesAsWarnings = Boolean.parseBoolean(value);
+                break;
+            case "scriptExtensions":
+                scriptExtensions = value;
+                break;
+            case "checkOptions":
+                checkOptions = value;
+                break;
+            default:
+                // editor only settings
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.shellcheck.cli;
+
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a report file by file as the checks complete, so only the issues of the files in flight are kept
+ * in memory. Calls are serialized by the caller.
+ */
+interface ShellcheckReportWriter {
+
+    void start() throws IOException;
+
+    /**
+     * @param path the path of the file relative to the working directory, with forward slashes
+     */
+    void file(@NotNull String path, @NotNull List<ShellcheckResult.Issue> issues) throws IOException;
+
+    void finish() throws IOException;
+}
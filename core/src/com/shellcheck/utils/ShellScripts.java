@@ -0,0 +1,104 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Which files are shell scripts shellcheck understands: files with one of the configured extensions, and
+ * files whose shebang names a supported shell.
+ */
+public final class ShellScripts {
+    /**
+     * Only this many characters at the start of a file are looked at for a shebang.
+     */
+    public static final int SHEBANG_LIMIT = 128;
+
+    private static final Set<String> SHELLS = new HashSet<>(Arrays.asList("sh", "bash", "dash", "ksh"));
+    private static final Map<String, String> EXTENSION_SHELLS = new HashMap<>();
+    private static final Pattern SHELL_DIRECTIVE = Pattern.compile("^[ \\t]*#[ \\t]*shellcheck[ \\t]+(?:[^\\n]*[ \\t])?shell=",
+            Pattern.MULTILINE);
+
+    static {
+        EXTENSION_SHELLS.put("bash", "bash");
+        EXTENSION_SHELLS.put("bats", "bash");
+        EXTENSION_SHELLS.put("dash", "dash");
+        EXTENSION_SHELLS.put("ksh", "ksh");
+    }
+
+    private ShellScripts() {
+    }
+
+    /**
+     * @param fileExtensions comma separated extensions, with or without the dot
+     */
+    @NotNull
+    public static Set<String> parseExtensions(@NotNull String fileExtensions) {
+        if (fileExtensions.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(fileExtensions.split(","))
+                .map(String::trim)
+                .map(extension -> extension.startsWith(".") ? extension.substring(1) : extension)
+                .filter(extension -> !extension.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    public static boolean hasExtension(@NotNull String fileName, @NotNull Set<String> extensions) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && extensions.contains(fileName.substring(dot + 1));
+    }
+
+    public static boolean isShellShebang(@NotNull CharSequence text) {
+        if (text.length() < 2 || text.charAt(0) != '#' || text.charAt(1) != '!') {
+            return false;
+        }
+        int end = 2;
+        while (end < text.length() && end < SHEBANG_LIMIT && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+            end++;
+        }
+        List<String> words = Arrays.asList(text.subSequence(2, end).toString().trim().split("\\s+"));
+        if (words.isEmpty()) {
+            return false;
+        }
+        String interpreter = baseName(words.get(0));
+        if (interpreter.equals("env")) {
+            interpreter = words.stream().skip(1)
+                    .filter(word -> !word.startsWith("-") && !word.contains("="))
+                    .findFirst().map(ShellScripts::baseName).orElse("");
+        }
+        return SHELLS.contains(interpreter);
+    }
+
+    /**
+     * The dialect shellcheck falls back to for a file on disk without a shebang or shell directive, taken from
+     * its extension; null for the default dialect.
+     */
+    @Nullable
+    public static String getExtensionShell(@NotNull String fileName) {
+        String name = baseName(fileName);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? EXTENSION_SHELLS.get(name.substring(dot + 1)) : null;
+    }
+
+    /**
+     * Whether the script names its dialect itself, by a shebang or a {@code shell} directive; both win over the extension.
+     */
+    public static boolean declaresShell(@NotNull CharSequence text) {
+        return text.length() >= 2 && text.charAt(0) == '#' && text.charAt(1) == '!' || SHELL_DIRECTIVE.matcher(text).find();
+    }
+
+    @NotNull
+    private static String baseName(@NotNull String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One shellcheck process checking several files on disk, with the issues split per file; shared by the batch
+ * runs of the plugin and the command line. Any output on stderr fails the whole batch, so callers can fall back
+ * to checking the files one by one.
+ */
+public final class ShellcheckBatchRun {
+    private final Map<String, List<ShellcheckResult.Issue>> issuesByFile = new LinkedHashMap<>();
+    private final List<ShellcheckResult.Issue> unexpected = new ArrayList<>();
+    private final ShellcheckProcess process;
+
+    /**
+     * @param process shellcheck started with the check options of {@link ShellcheckJson} and the files
+     */
+    public ShellcheckBatchRun(@NotNull Process process, @NotNull List<String> files) {
+        for (String file : files) {
+            issuesByFile.put(file, new ArrayList<>());
+        }
+        this.process = ShellcheckProcess.attach(process, issue -> issuesByFile.getOrDefault(issue.file, unexpected).add(issue));
+    }
+
+    @NotNull
+    public ShellcheckProcess getProcess() {
+        return process;
+    }
+
+    /**
+     * The number of issues read so far; all of them once {@link ShellcheckProcess#waitFor} returned.
+     */
+    public int getIssueCount() {
+        return issuesByFile.values().stream().mapToInt(List::size).sum() + unexpected.size();
+    }
+
+    /**
+     * @param parsed what {@link ShellcheckProcess#waitFor} returned
+     * @return a result per file, in the order of the files
+     * @throws IOException when the batch failed as a whole
+     */
+    @NotNull
+    public Map<String, ShellcheckResult> getResults(boolean parsed) throws IOException {
+        String stderr = process.getStderr().trim();
+        if (!stderr.isEmpty()) {
+            throw new IOException(stderr);
+        }
+        if (!parsed) {
+            throw new IOException("Cannot parse shellcheck output: " + process.getStdoutPrefix());
+        }
+        if (!unexpected.isEmpty()) {
+            throw new IOException("Unexpected file in shellcheck output: " + unexpected.get(0).file);
+        }
+        Map<String, ShellcheckResult> results = new LinkedHashMap<>();
+        issuesByFile.forEach((file, fileIssues) -> results.put(file, new ShellcheckResult(fileIssues, "")));
+        return results;
+    }
+}
@@ -0,0 +1,172 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Line offsets of one text, created per apply and shared by all issues reported for it. The json format counts a
+ * tab as {@value ShellcheckColumns#TAB_WIDTH} columns, so its columns are mapped by scanning each line once, only as
+ * far as issues reach; json1 columns map arithmetically.
+ */
+public class ShellcheckColumnIndex {
+    private final CharSequence text;
+    private final int lineCount;
+    private final IntUnaryOperator lineStart;
+    private final IntUnaryOperator lineEnd;
+    private final Line[] lines;
+
+    public ShellcheckColumnIndex(@NotNull CharSequence text, int lineCount, @NotNull IntUnaryOperator lineStart, @NotNull IntUnaryOperator lineEnd) {
+        this.text = text;
+        this.lineCount = lineCount;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        this.lines = new Line[lineCount];
+    }
+
+    /**
+     * Index of a text with {@code \n} or {@code \r\n} line separators.
+     */
+    @NotNull
+    public static ShellcheckColumnIndex of(@NotNull CharSequence text) {
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    int[] grown = new int[count * 2];
+                    System.arraycopy(starts, 0, grown, 0, count);
+                    starts = grown;
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        int[] lineStarts = starts;
+        int lines = count;
+        return new ShellcheckColumnIndex(text, lines, line -> lineStarts[line], line -> {
+            int end = line + 1 < lines ? lineStarts[line + 1] - 1 : text.length();
+            return end > lineStarts[line] && text.charAt(end - 1) == '\r' ? end - 1 : end;
+        });
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    @NotNull
+    public Line getLine(int line) {
+        Line indexed = lines[line];
+        if (indexed == null) {
+            indexed = new Line(text, lineStart.applyAsInt(line), lineEnd.applyAsInt(line));
+            lines[line] = indexed;
+        }
+        return indexed;
+    }
+
+    /**
+     * Offset of a one based json1 position, which may be the end of the line; -1 outside of the text.
+     */
+    public int offsetOf(int line, int column) {
+        if (line < 1 || line > lineCount || column < 1) {
+            return -1;
+        }
+        int start = lineStart.applyAsInt(line - 1);
+        int offset = start + column - 1;
+        return offset <= lineEnd.applyAsInt(line - 1) ? offset : -1;
+    }
+
+    /**
+     * Json columns of a line, mapped as far as the columns asked for so far: every tab passed is recorded with its
+     * column, so resolving a column takes a binary search and no issue scans the line again.
+     */
+    public static class Line {
+        private static final int[] NO_TABS = new int[0];
+
+        public final int start;
+        public final int end;
+        private final CharSequence text;
+        private int scanned;
+        private int scannedColumns;
+        private int[] tabOffsets = NO_TABS;
+        private int[] tabColumns = NO_TABS;
+        private int tabCount;
+
+        Line(@NotNull CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.scanned = start;
+        }
+
+        /**
+         * Offset of the character covering the zero based column, empty past the end of the line.
+         */
+        @NotNull
+        public OptionalInt offsetOf(int column, boolean singleColumnTabs) {
+            if (start == end) {
+                return OptionalInt.empty();
+            }
+            if (column < 0) {
+                return OptionalInt.of(start);
+            }
+            if (singleColumnTabs) {
+                return column < end - start ? OptionalInt.of(start + column) : OptionalInt.empty();
+            }
+            scan(column);
+            if (column >= scannedColumns) {
+                return OptionalInt.empty();
+            }
+            int tab = lastTabAt(column);
+            if (tab < 0) {
+                return OptionalInt.of(start + column);
+            }
+            int tabColumn = tabColumns[tab];
+            int afterTab = column - tabColumn - ShellcheckColumns.TAB_WIDTH;
+            return OptionalInt.of(afterTab < 0 ? tabOffsets[tab] : tabOffsets[tab] + 1 + afterTab);
+        }
+
+        /**
+         * The number of json columns of the line.
+         */
+        public int getColumnCount() {
+            scan(Integer.MAX_VALUE - ShellcheckColumns.TAB_WIDTH);
+            return scannedColumns;
+        }
+
+        private void scan(int column) {
+            while (scannedColumns <= column && scanned < end) {
+                if (text.charAt(scanned) == '\t') {
+                    if (tabCount == tabOffsets.length) {
+                        tabOffsets = Arrays.copyOf(tabOffsets, Math.max(4, 2 * tabCount));
+                        tabColumns = Arrays.copyOf(tabColumns, tabOffsets.length);
+                    }
+                    tabOffsets[tabCount] = scanned;
+                    tabColumns[tabCount++] = scannedColumns;
+                    scannedColumns += ShellcheckColumns.TAB_WIDTH;
+                } else {
+                    scannedColumns++;
+                }
+                scanned++;
+            }
+        }
+
+        /**
+         * Index of the last tab starting at or before the column, -1 when there is none.
+         */
+        private int lastTabAt(int column) {
+            int low = 0;
+            int high = tabCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (tabColumns[middle] <= column) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Maps the columns of the json format, which counts a tab as {@value #TAB_WIDTH} columns, to characters; the
+ * json1 format counts every character as one column.
+ */
+public final class ShellcheckColumns {
+    public static final int TAB_WIDTH = 8;
+
+    private ShellcheckColumns() {
+    }
+
+    /**
+     * Converts the columns of json issues of the text in place to the character columns json1 reports; issues
+     * already in character columns are left alone.
+     */
+    public static void toCharacterColumns(@NotNull CharSequence text, @NotNull List<ShellcheckResult.Issue> issues) {
+        ShellcheckColumnIndex index = null;
+        for (ShellcheckResult.Issue issue : issues) {
+            if (issue.singleColumnTabs) {
+                continue;
+            }
+            if (index == null) {
+                index = ShellcheckColumnIndex.of(text);
+            }
+            issue.column = toCharacterColumn(index, issue.line, issue.column);
+            issue.endColumn = toCharacterColumn(index, issue.endLine == 0 ? issue.line : issue.endLine, issue.endColumn);
+            issue.singleColumnTabs = true;
+        }
+    }
+
+    private static int toCharacterColumn(@NotNull ShellcheckColumnIndex index, int line, int column) {
+        if (line < 1 || line > index.getLineCount() || column < 1) {
+            return column;
+        }
+        ShellcheckColumnIndex.Line indexLine = index.getLine(line - 1);
+        int past = column - 1 - indexLine.getColumnCount();
+        return past < 0
+                ? indexLine.offsetOf(column - 1, false).getAsInt() - indexLine.start + 1
+                : indexLine.end - indexLine.start + 1 + past;
+    }
+}
@@ -0,0 +1,67 @@
+package com.shellcheck.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the json and json1 output of shellcheck issue by issue, without holding the whole output.
+ */
+public final class ShellcheckJson {
+    /**
+     * Options of every check: the output format read here, and following sourced files.
+     */
+    public static final List<String> CHECK_OPTIONS = Collections.unmodifiableList(Arrays.asList("--format=json", "-x"));
+    /**
+     * Same as {@link #CHECK_OPTIONS} in the json1 format, which adds fixes; available since shellcheck 0.7.
+     */
+    public static final List<String> JSON1_CHECK_OPTIONS = Collections.unmodifiableList(Arrays.asList("--format=json1", "-x"));
+
+    private static final Gson GSON = new Gson();
+
+    private ShellcheckJson() {
+    }
+
+    @NotNull
+    public static List<String> checkOptions(boolean json1) {
+        return json1 ? JSON1_CHECK_OPTIONS : CHECK_OPTIONS;
+    }
+
+    /**
+     * Reads either format: a json array of issues, or a json1 object with the issues in {@code comments}.
+     */
+    public static void parse(@NotNull Reader json, @NotNull Consumer<ShellcheckResult.Issue> consumer) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            parseIssues(reader, false, consumer);
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("comments")) {
+                parseIssues(reader, true, consumer);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void parseIssues(@NotNull JsonReader reader, boolean json1, @NotNull Consumer<ShellcheckResult.Issue> consumer) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ShellcheckResult.Issue issue = GSON.fromJson(reader, ShellcheckResult.Issue.class);
+            issue.singleColumnTabs = json1;
+            consumer.accept(issue);
+        }
+        reader.endArray();
+    }
+}
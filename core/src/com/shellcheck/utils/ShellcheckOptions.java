@@ -0,0 +1,286 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The filtering options of a check: minimum severity, excluded and enabled optional checks, shell dialect and
+ * source paths. They come from the plugin settings, as shellcheck command line options, and from
+ * {@code .shellcheckrc} files; {@link #with(ShellcheckOptions)} layers them, later layers win for single values
+ * and add to the lists.
+ */
+public final class ShellcheckOptions {
+    public static final String RC_FILE = ".shellcheckrc";
+    /**
+     * Option of the {@code extended-analysis} rc directive, known since shellcheck 0.10.
+     */
+    public static final String EXTENDED_ANALYSIS_OPTION = "--extended-analysis";
+    public static final List<String> SEVERITIES = Collections.unmodifiableList(Arrays.asList("error", "warning", "info", "style"));
+    public static final List<String> SHELLS = Collections.unmodifiableList(Arrays.asList("sh", "bash", "dash", "ksh", "busybox"));
+    public static final ShellcheckOptions NONE = new ShellcheckOptions(null, Collections.emptySet(), Collections.emptySet(), null,
+            Collections.emptyList(), null);
+
+    private final String severity;
+    private final Set<String> excluded;
+    private final Set<String> enabled;
+    private final String shell;
+    private final List<String> sourcePaths;
+    private final Boolean extendedAnalysis;
+
+    private ShellcheckOptions(@Nullable String severity, @NotNull Set<String> excluded, @NotNull Set<String> enabled, @Nullable String shell,
+                              @NotNull List<String> sourcePaths, @Nullable Boolean extendedAnalysis) {
+        this.severity = severity;
+        this.excluded = excluded;
+        this.enabled = enabled;
+        this.shell = shell;
+        this.sourcePaths = sourcePaths;
+        this.extendedAnalysis = extendedAnalysis;
+    }
+
+    /**
+     * Parses shellcheck command line options, e.g. {@code --severity=warning -e SC2034,SC2086}.
+     *
+     * @throws IllegalArgumentException for options other than severity, exclude, enable and shell, or invalid values
+     */
+    @NotNull
+    public static ShellcheckOptions parse(@Nullable String commandLine) {
+        Builder builder = new Builder();
+        String[] args = commandLine == null ? new String[0] : commandLine.trim().split("\\s+");
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.isEmpty()) {
+                continue;
+            }
+            if (arg.charAt(0) != '-') {
+                throw new IllegalArgumentException("Unsupported argument " + arg);
+            }
+            String name = arg;
+            String value = null;
+            int equals = arg.indexOf('=');
+            if (arg.startsWith("--") && equals > 0) {
+                name = arg.substring(0, equals);
+                value = arg.substring(equals + 1);
+            } else if (arg.length() > 2 && arg.charAt(0) == '-' && arg.charAt(1) != '-') {
+                name = arg.substring(0, 2);
+                value = arg.substring(2);
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            }
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value of " + name);
+            }
+            switch (name) {
+                case "-S":
+                case "--severity":
+                    builder.severity(value);
+                    break;
+                case "-e":
+                case "--exclude":
+                    builder.exclude(value);
+                    break;
+                case "-o":
+                case "--enable":
+                    builder.enable(value);
+                    break;
+                case "-s":
+                case "--shell":
+                    builder.shell(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported option " + name);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads the directives of a {@code .shellcheckrc}: {@code disable}, {@code enable}, {@code shell},
+     * {@code source-path}, resolved against the directory of the file, and {@code extended-analysis}. The rc file
+     * is not read by shellcheck itself, see {@code --norc}, so every other directive is dropped here: sourced
+     * files are always followed, which makes {@code external-sources} moot, and {@code source} only means
+     * something in a script. Invalid values are skipped, like shellcheck reports but does not fail on them.
+     */
+    @NotNull
+    public static ShellcheckOptions parseRc(@NotNull Reader rc, @NotNull File directory) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader reader = new BufferedReader(rc);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comment = line.indexOf('#');
+            String directive = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            int equals = directive.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            String name = directive.substring(0, equals).trim();
+            String value = directive.substring(equals + 1).trim();
+            try {
+                switch (name) {
+                    case "disable":
+                        builder.exclude(value);
+                        break;
+                    case "enable":
+                        builder.enable(value);
+                        break;
+                    case "shell":
+                        builder.shell(value);
+                        break;
+                    case "source-path":
+                        builder.sourcePaths.add(value.startsWith("SCRIPTDIR") || new File(value).isAbsolute()
+                                ? value : new File(directory, value).getPath());
+                        break;
+                    case "extended-analysis":
+                        builder.extendedAnalysis(value);
+                        break;
+                    default:
+                        // external-sources, source and unknown directives
+                }
+            } catch (IllegalArgumentException ignored) {
+                // invalid value
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return these options overridden and extended by the other ones
+     */
+    @NotNull
+    public ShellcheckOptions with(@NotNull ShellcheckOptions other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        Set<String> allExcluded = new TreeSet<>(excluded);
+        allExcluded.addAll(other.excluded);
+        Set<String> allEnabled = new TreeSet<>(enabled);
+        allEnabled.addAll(other.enabled);
+        List<String> allSourcePaths = new ArrayList<>(sourcePaths);
+        allSourcePaths.addAll(other.sourcePaths);
+        return new ShellcheckOptions(other.severity != null ? other.severity : severity, allExcluded, allEnabled,
+                other.shell != null ? other.shell : shell, allSourcePaths,
+                other.extendedAnalysis != null ? other.extendedAnalysis : extendedAnalysis);
+    }
+
+    public boolean isEmpty() {
+        return severity == null && excluded.isEmpty() && enabled.isEmpty() && shell == null && sourcePaths.isEmpty()
+                && extendedAnalysis == null;
+    }
+
+    /**
+     * @return the shellcheck arguments, always in the same order so they can be part of cache keys
+     */
+    @NotNull
+    public List<String> toArguments() {
+        List<String> arguments = new ArrayList<>();
+        if (severity != null) {
+            arguments.add("--severity=" + severity);
+        }
+        if (!excluded.isEmpty()) {
+            arguments.add("--exclude=" + String.join(",", excluded));
+        }
+        if (!enabled.isEmpty()) {
+            arguments.add("--enable=" + String.join(",", enabled));
+        }
+        if (shell != null) {
+            arguments.add("--shell=" + shell);
+        }
+        for (String sourcePath : sourcePaths) {
+            arguments.add("--source-path=" + sourcePath);
+        }
+        if (extendedAnalysis != null) {
+            arguments.add(EXTENDED_ANALYSIS_OPTION + "=" + extendedAnalysis);
+        }
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", toArguments());
+    }
+
+    private static class Builder {
+        private String severity;
+        private final Set<String> excluded = new TreeSet<>();
+        private final Set<String> enabled = new TreeSet<>();
+        private String shell;
+        private final List<String> sourcePaths = new ArrayList<>();
+        private Boolean extendedAnalysis;
+
+        void severity(@NotNull String value) {
+            severity = oneOf(value, SEVERITIES, "severity");
+        }
+
+        void shell(@NotNull String value) {
+            shell = oneOf(value, SHELLS, "shell");
+        }
+
+        void extendedAnalysis(@NotNull String value) {
+            extendedAnalysis = Boolean.valueOf(oneOf(value, Arrays.asList("true", "false"), "extended-analysis"));
+        }
+
+        void exclude(@NotNull String value) {
+            for (String code : codes(value)) {
+                excluded.add(code.equalsIgnoreCase("all") ? "all" : normalizeCode(code));
+            }
+        }
+
+        void enable(@NotNull String value) {
+            for (String check : codes(value)) {
+                enabled.add(check);
+            }
+        }
+
+        @NotNull
+        ShellcheckOptions build() {
+            return severity == null && excluded.isEmpty() && enabled.isEmpty() && shell == null && sourcePaths.isEmpty()
+                    && extendedAnalysis == null ? NONE : new ShellcheckOptions(severity, excluded, enabled, shell, sourcePaths, extendedAnalysis);
+        }
+
+        @NotNull
+        private static String oneOf(@NotNull String value, @NotNull List<String> allowed, @NotNull String name) {
+            String lower = value.toLowerCase(Locale.ROOT);
+            if (!allowed.contains(lower)) {
+                throw new IllegalArgumentException("Invalid " + name + " " + value + ", expected one of " + String.join(", ", allowed));
+            }
+            return lower;
+        }
+
+        @NotNull
+        private static List<String> codes(@NotNull String value) {
+            List<String> codes = new ArrayList<>();
+            for (String code : value.split(",")) {
+                if (!code.trim().isEmpty()) {
+                    codes.add(code.trim());
+                }
+            }
+            return codes;
+        }
+
+        /**
+         * Excluded checks are written as {@code SC2034} or {@code 2034}; shellcheck accepts both.
+         */
+        @NotNull
+        private static String normalizeCode(@NotNull String code) {
+            String digits = code.regionMatches(true, 0, "SC", 0, 2) ? code.substring(2) : code;
+            if (digits.isEmpty() || !digits.chars().allMatch(Character::isDigit)) {
+                throw new IllegalArgumentException("Invalid check code " + code);
+            }
+            return "SC" + digits;
+        }
+    }
+}
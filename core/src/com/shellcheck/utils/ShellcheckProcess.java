@@ -0,0 +1,205 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Shellcheck process whose stdout and stderr are read on background threads, shared by the plugin and the
+ * command line. Stdout is parsed as it arrives and handed over issue by issue, only its beginning is kept for
+ * error reporting; stderr is capped.
+ */
+public final class ShellcheckProcess {
+    private static final int MAX_STDOUT_PREFIX = 16 * 1024;
+    private static final int MAX_STDERR = 64 * 1024;
+    private static final long DRAIN_TIME_OUT = TimeUnit.SECONDS.toMillis(5L);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    /**
+     * Daemon threads reading and writing the streams of shellcheck processes.
+     */
+    public static final ExecutorService IO_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Shellcheck I/O " + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Process process;
+    private final CappedOutput stdoutPrefix = new CappedOutput(MAX_STDOUT_PREFIX);
+    private final CappedOutput stderr = new CappedOutput(MAX_STDERR);
+    private final Future<Boolean> stdoutParsed;
+    private final Future<?> stderrRead;
+    private final long attachedAt = System.nanoTime();
+    private volatile long exitedAt;
+    private volatile long parsedAt;
+
+    private ShellcheckProcess(@NotNull Process process, @NotNull Consumer<ShellcheckResult.Issue> consumer) {
+        this.process = process;
+        stdoutParsed = IO_EXECUTOR.submit(() -> {
+            InputStream stdout = new PrefixRecordingInputStream(process.getInputStream(), stdoutPrefix);
+            try {
+                ShellcheckJson.parse(new InputStreamReader(stdout, StandardCharsets.UTF_8), consumer);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                return false;
+            } finally {
+                parsedAt = System.nanoTime();
+                drain(stdout);
+            }
+        });
+        stderrRead = IO_EXECUTOR.submit(() -> drain(new PrefixRecordingInputStream(process.getErrorStream(), stderr)));
+    }
+
+    @NotNull
+    public static ShellcheckProcess attach(@NotNull Process process, @NotNull Consumer<ShellcheckResult.Issue> consumer) {
+        return new ShellcheckProcess(process, consumer);
+    }
+
+    /**
+     * Waits for the process and both streams; true when stdout was complete JSON output.
+     * The process is destroyed on cancellation, on interruption and on time out.
+     *
+     * @throws CancellationException when cancelled or interrupted
+     * @throws TimeoutException      when the process ran longer than the time out
+     */
+    public boolean waitFor(long timeOut, long pollInterval, @NotNull BooleanSupplier cancelled) throws TimeoutException {
+        long deadline = System.currentTimeMillis() + timeOut;
+        try {
+            while (!process.waitFor(pollInterval, TimeUnit.MILLISECONDS)) {
+                if (cancelled.getAsBoolean()) {
+                    process.destroy();
+                    throw new CancellationException("Shellcheck is cancelled.");
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    process.destroy();
+                    throw new TimeoutException("Shellcheck is timed out.");
+                }
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Shellcheck is interrupted.");
+        }
+        exitedAt = System.nanoTime();
+        try {
+            stderrRead.get(DRAIN_TIME_OUT, TimeUnit.MILLISECONDS);
+            return stdoutParsed.get(DRAIN_TIME_OUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Shellcheck is interrupted.");
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    public long getAttachedAt() {
+        return attachedAt;
+    }
+
+    /**
+     * Time from attaching to the process until it exited, valid after {@link #waitFor}.
+     */
+    public long getExecutionNanos() {
+        return exitedAt - attachedAt;
+    }
+
+    /**
+     * Time the output parsing took after the process exited; the parsing before overlaps the execution.
+     */
+    public long getParseNanos() {
+        return Math.max(0, parsedAt - exitedAt);
+    }
+
+    @NotNull
+    public String getStdoutPrefix() {
+        return stdoutPrefix.toString();
+    }
+
+    @NotNull
+    public String getStderr() {
+        return stderr.toString();
+    }
+
+    private static Void drain(@NotNull InputStream stream) {
+        byte[] buffer = new byte[8192];
+        try {
+            while (stream.read(buffer) >= 0) {
+                // keep the pipe empty so the process never blocks on a full buffer
+            }
+        } catch (IOException ignored) {
+            // process destroyed
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static class CappedOutput {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int limit;
+        private boolean truncated;
+
+        CappedOutput(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized void write(byte[] buffer, int offset, int length) {
+            int accepted = Math.min(length, limit - bytes.size());
+            if (accepted > 0) {
+                bytes.write(buffer, offset, accepted);
+            }
+            truncated |= accepted < length;
+        }
+
+        @Override
+        public synchronized String toString() {
+            String text = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            return truncated ? text + "\n... (truncated)" : text;
+        }
+    }
+
+    private static class PrefixRecordingInputStream extends FilterInputStream {
+        private final CappedOutput prefix;
+
+        PrefixRecordingInputStream(@NotNull InputStream in, @NotNull CappedOutput prefix) {
+            super(in);
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                prefix.write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NotNull byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                prefix.write(buffer, offset, count);
+            }
+            return count;
+        }
+    }
+}
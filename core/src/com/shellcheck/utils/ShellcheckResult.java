@@ -0,0 +1,104 @@
+package com.shellcheck.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ShellcheckResult {
+    private final List<Issue> issues;
+    private final String errorOutput;
+    private final boolean unavailable;
+    private final long runNanos;
+
+    public ShellcheckResult(List<Issue> issues, String errorOutput) {
+        this(issues, errorOutput, 0L);
+    }
+
+    /**
+     * @param runNanos wall time of the single file run that produced the result
+     */
+    public ShellcheckResult(List<Issue> issues, String errorOutput, long runNanos) {
+        this(issues, errorOutput, false, runNanos);
+    }
+
+    public ShellcheckResult(String errorOutput) {
+        this(null, errorOutput);
+    }
+
+    private ShellcheckResult(List<Issue> issues, String errorOutput, boolean unavailable, long runNanos) {
+        this.issues = issues == null ? Collections.emptyList() : issues;
+        this.errorOutput = errorOutput;
+        this.unavailable = unavailable;
+        this.runNanos = runNanos;
+    }
+
+    /**
+     * Shellcheck was not run, e.g. because the executable keeps failing; nothing to report to the user.
+     */
+    public static ShellcheckResult unavailable(String reason) {
+        return new ShellcheckResult(null, reason, true, 0L);
+    }
+
+    public boolean isUnavailable() {
+        return unavailable;
+    }
+
+    /**
+     * Wall time of the shellcheck run that produced the result, 0 when it did not come from a single file run.
+     */
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    public List<Issue> getIssues() {
+        return issues;
+    }
+
+    public String getErrorOutput() {
+        return errorOutput;
+    }
+
+    public static class Issue {
+        public String file;
+        public int line;
+        public int endLine;
+        public int column;
+        public int endColumn;
+        public String level;
+        public String code;
+        public String message;
+        /**
+         * Replacements fixing the issue, only reported in the json1 format.
+         */
+        public Fix fix;
+        /**
+         * Columns count a tab as one column, as in the json1 format; the json format counts it as eight.
+         */
+        public transient boolean singleColumnTabs;
+
+        public String getFormattedMessage() {
+            return message.trim() + " [" + (code == null ? "none" : "SC" + code) + "]";
+        }
+
+        public boolean hasFix() {
+            return fix != null && fix.replacements != null && !fix.replacements.isEmpty();
+        }
+    }
+
+    public static class Fix {
+        public List<Replacement> replacements;
+    }
+
+    /**
+     * Replaces the text between the one based positions, the end column is exclusive and tabs count as one column.
+     * Insertions at the same position are ordered by {@link #insertionPoint}, {@code beforeStart} or {@code afterEnd}.
+     */
+    public static class Replacement {
+        public int line;
+        public int endLine;
+        public int column;
+        public int endColumn;
+        public int precedence;
+        public String insertionPoint;
+        public String replacement;
+    }
+}
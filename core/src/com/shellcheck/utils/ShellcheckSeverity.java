@@ -0,0 +1,25 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Severity an issue is reported with, shared by the editor annotations and the command line reports.
+ */
+public enum ShellcheckSeverity {
+    ERROR, WARNING, INFO;
+
+    @NotNull
+    public static ShellcheckSeverity of(@NotNull ShellcheckResult.Issue issue, boolean treatAllIssuesAsWarnings) {
+        if (issue.level == null) {
+            return INFO;
+        }
+        switch (issue.level) {
+            case "error":
+                return treatAllIssuesAsWarnings ? WARNING : ERROR;
+            case "warning":
+                return WARNING;
+            default:
+                return INFO;
+        }
+    }
+}
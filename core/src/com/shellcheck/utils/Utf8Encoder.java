@@ -0,0 +1,62 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes a {@link CharSequence} to UTF-8 chunk by chunk through one reusable buffer,
+ * without materializing the text as a String or byte array.
+ */
+public final class Utf8Encoder {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<Utf8Encoder> ENCODERS = ThreadLocal.withInitial(Utf8Encoder::new);
+
+    public interface ByteSink {
+        void write(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private Utf8Encoder() {
+    }
+
+    @NotNull
+    public static Utf8Encoder forCurrentThread() {
+        return ENCODERS.get();
+    }
+
+    public void encode(@NotNull CharSequence text, @NotNull ByteSink sink) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        buffer.clear();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            writeBuffer(sink);
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(buffer);
+            writeBuffer(sink);
+        } while (result.isOverflow());
+    }
+
+    private void writeBuffer(@NotNull ByteSink sink) throws IOException {
+        if (buffer.position() > 0) {
+            sink.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.shellcheck;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.shellcheck.utils.ShellcheckColumnIndex;
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+
+class ErrorRange {
+    private boolean valid;
+    private TextRange lineRange;
+    private TextRange columnRange;
+
+    ErrorRange(@NotNull ColumnIndex index, @NotNull ShellcheckResult.Issue issue) {
+        calculate(index, issue);
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    TextRange getLineRange() {
+        return lineRange;
+    }
+
+    TextRange getColumnRange() {
+        return columnRange;
+    }
+
+    private void calculate(@NotNull ColumnIndex index, @NotNull ShellcheckResult.Issue issue) {
+        int line = issue.line - 1;
+        int endLine = issue.endLine == 0 ? line : issue.endLine - 1;
+
+        if (line >= 0 && endLine >= 0 && endLine < index.getLineCount()) {
+            ShellcheckColumnIndex.Line beginLine = index.getLine(line);
+            int lineStartOffset = beginLine.offsetOf(issue.column - 1, issue.singleColumnTabs).orElse(beginLine.start);
+
+            int endColumn = issue.endColumn == 0 ? issue.column : issue.endColumn;
+            ShellcheckColumnIndex.Line lastLine = index.getLine(endLine);
+            int endLineEndOffset = lastLine.offsetOf(endColumn - 1, issue.singleColumnTabs).orElse(lastLine.end);
+
+            lineRange = TextRange.create(beginLine.start, lastLine.end);
+            columnRange = TextRange.create(lineStartOffset, endLineEndOffset);
+            valid = true;
+        }
+    }
+
+    /**
+     * Column index of a document, or of the synthetic script of its shell fragments.
+     */
+    static class ColumnIndex extends ShellcheckColumnIndex {
+        ColumnIndex(@NotNull Document document) {
+            super(document.getImmutableCharSequence(), document.getLineCount(), document::getLineStartOffset, document::getLineEndOffset);
+        }
+
+        ColumnIndex(@NotNull ShellFragments.Script script) {
+            super(script.getText(), script.getLineCount(), script::getLineStartOffset, script::getLineEndOffset);
+        }
+    }
+}
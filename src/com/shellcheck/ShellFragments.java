@@ -0,0 +1,579 @@
+package com.shellcheck;
+
+import com.intellij.openapi.util.TextRange;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shell code embedded in other files: Dockerfile {@code RUN} instructions, Makefile recipes and {@code run:} steps
+ * of CI YAML files. The fragments of a file are joined into one synthetic script, checked by a single shellcheck
+ * run; each fragment is wrapped in a subshell on synthetic lines, so an unbalanced fragment does not spill into the
+ * next one. Every other line of the script is a line of the host file from the same column on, with host syntax
+ * like make references or GitHub expressions blanked in place, so columns stay valid and offsets map back line by
+ * line. Fragments run by another shell than sh or bash, per the Dockerfile {@code SHELL}, the Makefile
+ * {@code SHELL} or the {@code shell:} of a step, are skipped.
+ */
+final class ShellFragments {
+    private static final Pattern DOCKER_RUN = Pattern.compile("^[ \\t]*RUN(?:[ \\t]+--\\S+)*[ \\t]+(?=\\S)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DOCKER_FROM = Pattern.compile("^[ \\t]*FROM[ \\t]", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DOCKER_SHELL = Pattern.compile("^[ \\t]*SHELL[ \\t]+\\[[ \\t]*\"([^\"]*)\"", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HEREDOC = Pattern.compile("<<(-?)[ \\t]*([\"']?)([A-Za-z_][A-Za-z0-9_]*)\\2");
+    private static final Pattern SHEBANG = Pattern.compile("^#![ \\t]*(\\S+)(?:[ \\t]+(\\S+))?");
+    private static final Pattern MAKE_RULE = Pattern.compile("^[^\\t#\\s][^=]*?(?<![:?+!]):(?![=:])");
+    private static final Pattern MAKE_SHELL = Pattern.compile("^(?:override[ \\t]+)?SHELL[ \\t]*(?::{1,3}|[?+!])?=[ \\t]*(\\S+)");
+    private static final Pattern YAML_RUN = Pattern.compile("^([ ]*)(-[ ]+)?run:[ ]*");
+    private static final Pattern YAML_SHELL = Pattern.compile("^[ ]*(?:-[ ]+)?shell:[ ]*[\"']?([^\\s\"'#]+)");
+    private static final Pattern YAML_BLOCK = Pattern.compile("[|>][-+]?[0-9]?[ ]*(?:#.*)?");
+
+    enum Host {
+        DOCKERFILE("sh"), MAKEFILE("sh"), YAML("bash");
+
+        private final String shell;
+
+        Host(@NotNull String shell) {
+            this.shell = shell;
+        }
+    }
+
+    private ShellFragments() {
+    }
+
+    @Nullable
+    static Host getHost(@NotNull String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.equals("dockerfile") || name.startsWith("dockerfile.") || name.endsWith(".dockerfile")) {
+            return Host.DOCKERFILE;
+        }
+        if (name.equals("makefile") || name.equals("gnumakefile") || name.endsWith(".mk")) {
+            return Host.MAKEFILE;
+        }
+        if (name.endsWith(".yml") || name.endsWith(".yaml")) {
+            return Host.YAML;
+        }
+        return null;
+    }
+
+    /**
+     * @return the fragments of the host text as one script, null when there are none
+     */
+    @Nullable
+    static Script extract(@NotNull Host host, @NotNull CharSequence text) {
+        Script.Builder builder = new Script.Builder(text);
+        Lines lines = new Lines(text);
+        switch (host) {
+            case DOCKERFILE:
+                extractDockerfile(lines, builder);
+                break;
+            case MAKEFILE:
+                extractMakefile(lines, builder);
+                break;
+            case YAML:
+                extractYaml(lines, builder);
+                break;
+        }
+        return builder.build();
+    }
+
+    /**
+     * The shellcheck dialect of a shell, by its path or name; null for shells that are not checked.
+     */
+    @Nullable
+    private static String dialectOf(@NotNull String shell) {
+        String name = shell.substring(shell.lastIndexOf('/') + 1);
+        switch (name) {
+            case "bash":
+                return "bash";
+            case "sh":
+            case "dash":
+            case "ash":
+                return "sh";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Shell form {@code RUN} instructions, run by the shell of the last {@code SHELL} instruction of the stage. A
+     * heredoc alone, {@code RUN <<EOF}, is a script of its own, unless its shebang names another interpreter;
+     * otherwise heredocs are the input of the command and are passed on with it. An unterminated heredoc takes the
+     * rest of the file, like it does for docker.
+     */
+    private static void extractDockerfile(@NotNull Lines lines, @NotNull Script.Builder builder) {
+        String shell = Host.DOCKERFILE.shell;
+        for (int line = 0; line < lines.count(); line++) {
+            CharSequence lineText = lines.text(line);
+            if (DOCKER_FROM.matcher(lineText).find()) {
+                shell = Host.DOCKERFILE.shell;
+                continue;
+            }
+            Matcher shellMatcher = DOCKER_SHELL.matcher(lineText);
+            if (shellMatcher.find()) {
+                shell = dialectOf(shellMatcher.group(1));
+                continue;
+            }
+            Matcher matcher = DOCKER_RUN.matcher(lineText);
+            if (!matcher.find() || lineText.charAt(matcher.end()) == '[') {
+                continue;
+            }
+            int last = line;
+            while (lines.isContinued(last) && last + 1 < lines.count()) {
+                last++;
+            }
+            String command = lineText.subSequence(matcher.end(), lineText.length()).toString();
+            Matcher heredoc = HEREDOC.matcher(command);
+            int bodyEnd = last;
+            boolean scriptForm = false;
+            while (heredoc.find()) {
+                scriptForm = heredoc.start() == 0 && command.substring(heredoc.end()).trim().isEmpty();
+                bodyEnd = findTerminator(lines, bodyEnd + 1, heredoc.group(3), !heredoc.group(1).isEmpty());
+                if (bodyEnd < 0) {
+                    return;
+                }
+            }
+            if (scriptForm) {
+                String scriptShell = shell;
+                Matcher shebang = last + 1 < bodyEnd ? SHEBANG.matcher(lines.text(last + 1)) : null;
+                if (shebang != null && shebang.find()) {
+                    boolean env = shebang.group(1).endsWith("/env") && shebang.group(2) != null;
+                    scriptShell = dialectOf(env ? shebang.group(2) : shebang.group(1));
+                }
+                addFragment(lines, builder, scriptShell, last + 1, bodyEnd - 1);
+            } else if (shell != null) {
+                builder.beginFragment(shell);
+                builder.addLine(lines.start(line) + matcher.end(), lines.end(line));
+                for (int next = line + 1; next <= bodyEnd; next++) {
+                    builder.addLine(lines.start(next), lines.end(next));
+                }
+                builder.endFragment();
+            }
+            line = bodyEnd;
+        }
+    }
+
+    /**
+     * @return the line of the heredoc terminator, -1 when there is none
+     */
+    private static int findTerminator(@NotNull Lines lines, int from, @NotNull String word, boolean stripTabs) {
+        for (int line = from; line < lines.count(); line++) {
+            String text = lines.text(line).toString();
+            if (stripTabs) {
+                text = StringUtils.stripStart(text, "\t");
+            }
+            if (text.equals(word)) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    private static void addFragment(@NotNull Lines lines, @NotNull Script.Builder builder, @Nullable String shell, int from, int to) {
+        if (shell == null || from > to) {
+            return;
+        }
+        builder.beginFragment(shell);
+        for (int line = from; line <= to; line++) {
+            builder.addLine(lines.start(line), lines.end(line));
+        }
+        builder.endFragment();
+    }
+
+    /**
+     * Recipe lines, each one a separate shell as make runs them, with the shell of the {@code SHELL} variable; the
+     * prefixes {@code @ - +} are skipped and make references are blanked out without moving the columns.
+     */
+    private static void extractMakefile(@NotNull Lines lines, @NotNull Script.Builder builder) {
+        String shell = Host.MAKEFILE.shell;
+        for (int line = 0; line < lines.count(); line++) {
+            Matcher matcher = MAKE_SHELL.matcher(lines.text(line));
+            if (matcher.find()) {
+                shell = dialectOf(matcher.group(1));
+            }
+        }
+        if (shell == null) {
+            return;
+        }
+        boolean inRule = false;
+        for (int line = 0; line < lines.count(); line++) {
+            CharSequence lineText = lines.text(line);
+            if (lineText.length() > 0 && lineText.charAt(0) == '\t') {
+                if (!inRule) {
+                    continue;
+                }
+                int start = 1;
+                while (start < lineText.length() && "@-+ \t".indexOf(lineText.charAt(start)) >= 0) {
+                    start++;
+                }
+                builder.beginFragment(shell);
+                builder.addMakeLine(lines.start(line) + start, lines.end(line));
+                while (lines.isContinued(line) && line + 1 < lines.count()) {
+                    line++;
+                    int continuationStart = lines.text(line).length() > 0 && lines.text(line).charAt(0) == '\t' ? 1 : 0;
+                    builder.addMakeLine(lines.start(line) + continuationStart, lines.end(line));
+                }
+                builder.endFragment();
+            } else if (lineText.toString().trim().isEmpty() || lineText.toString().trim().startsWith("#")) {
+                // blank lines and comments do not end a rule
+            } else {
+                inRule = MAKE_RULE.matcher(lineText).find();
+            }
+        }
+    }
+
+    /**
+     * {@code run:} values, plain or block scalars, run by bash unless the step has a {@code shell:} of its own.
+     */
+    private static void extractYaml(@NotNull Lines lines, @NotNull Script.Builder builder) {
+        for (int line = 0; line < lines.count(); line++) {
+            CharSequence lineText = lines.text(line);
+            Matcher matcher = YAML_RUN.matcher(lineText);
+            if (!matcher.find()) {
+                continue;
+            }
+            int runLine = line;
+            int keyColumn = matcher.end(1) + (matcher.group(2) != null ? matcher.group(2).length() : 0);
+            String value = lineText.subSequence(matcher.end(), lineText.length()).toString();
+            boolean block = YAML_BLOCK.matcher(value).matches();
+            if (block) {
+                while (line + 1 < lines.count()) {
+                    CharSequence next = lines.text(line + 1);
+                    int indent = indentOf(next);
+                    if (indent < next.length() && indent <= keyColumn) {
+                        break;
+                    }
+                    line++;
+                }
+            } else if (value.isEmpty() || value.charAt(0) == '"' || value.charAt(0) == '\'' || value.charAt(0) == '#') {
+                continue;
+            }
+            String stepShell = findStepShell(lines, runLine, line, keyColumn, matcher.group(2) != null);
+            String shell = stepShell != null ? dialectOf(stepShell) : Host.YAML.shell;
+            if (shell == null) {
+                continue;
+            }
+            builder.beginFragment(shell);
+            if (!block) {
+                builder.addYamlLine(lines.start(runLine) + matcher.end(), lines.end(runLine));
+            }
+            int blockIndent = -1;
+            for (int blockLine = runLine + 1; block && blockLine <= line; blockLine++) {
+                CharSequence blockText = lines.text(blockLine);
+                int indent = indentOf(blockText);
+                if (indent == blockText.length()) {
+                    builder.addBlankLine();
+                    continue;
+                }
+                if (blockIndent < 0) {
+                    blockIndent = indent;
+                }
+                builder.addYamlLine(lines.start(blockLine) + Math.min(indent, blockIndent), lines.end(blockLine));
+            }
+            builder.endFragment();
+        }
+    }
+
+    /**
+     * The {@code shell:} of the mapping holding the {@code run:} key, searched among the keys at the same column
+     * before and after the value, within the list item when the mapping is one.
+     *
+     * @return the first word of the shell, null when the step has none
+     */
+    @Nullable
+    private static String findStepShell(@NotNull Lines lines, int runLine, int valueEnd, int keyColumn, boolean itemStart) {
+        for (int line = runLine - 1; line >= 0 && !itemStart; line--) {
+            CharSequence text = lines.text(line);
+            int indent = indentOf(text);
+            if (indent == text.length() || text.charAt(indent) == '#' || indent > keyColumn) {
+                continue;
+            }
+            boolean item = text.charAt(indent) == '-';
+            if (!item && indent < keyColumn || item && keyColumnOf(text, indent) != keyColumn) {
+                break;
+            }
+            Matcher matcher = YAML_SHELL.matcher(text);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+            itemStart = item;
+        }
+        for (int line = valueEnd + 1; line < lines.count(); line++) {
+            CharSequence text = lines.text(line);
+            int indent = indentOf(text);
+            if (indent == text.length() || text.charAt(indent) == '#' || indent > keyColumn) {
+                continue;
+            }
+            if (indent < keyColumn || text.charAt(indent) == '-') {
+                break;
+            }
+            Matcher matcher = YAML_SHELL.matcher(text);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Column of the first key of a list item line.
+     */
+    private static int keyColumnOf(@NotNull CharSequence text, int dash) {
+        int column = dash + 1;
+        while (column < text.length() && text.charAt(column) == ' ') {
+            column++;
+        }
+        return column;
+    }
+
+    private static int indentOf(@NotNull CharSequence text) {
+        int indent = 0;
+        while (indent < text.length() && text.charAt(indent) == ' ') {
+            indent++;
+        }
+        return indent;
+    }
+
+    /**
+     * Synthetic script of the fragments of one host file, with the host offset of every line.
+     */
+    static class Script {
+        private final String text;
+        private final int[] lineStarts;
+        private final int[] hostLineStarts;
+
+        private Script(@NotNull String text, @NotNull int[] lineStarts, @NotNull int[] hostLineStarts) {
+            this.text = text;
+            this.lineStarts = lineStarts;
+            this.hostLineStarts = hostLineStarts;
+        }
+
+        @NotNull
+        String getText() {
+            return text;
+        }
+
+        int getLineCount() {
+            return lineStarts.length;
+        }
+
+        int getLineStartOffset(int line) {
+            return lineStarts[line];
+        }
+
+        int getLineEndOffset(int line) {
+            return (line + 1 < lineStarts.length ? lineStarts[line + 1] : text.length()) - 1;
+        }
+
+        /**
+         * @return the range in the host text, null when it starts or ends on a line that is not from the host
+         */
+        @Nullable
+        TextRange toHost(@NotNull TextRange range) {
+            int start = toHost(range.getStartOffset());
+            int end = toHost(range.getEndOffset());
+            return start >= 0 && end >= start ? TextRange.create(start, end) : null;
+        }
+
+        private int toHost(int offset) {
+            int line = Arrays.binarySearch(lineStarts, offset);
+            if (line < 0) {
+                line = -line - 2;
+            }
+            if (line < 0 || hostLineStarts[line] < 0) {
+                return -1;
+            }
+            return hostLineStarts[line] + offset - lineStarts[line];
+        }
+
+        private static class Builder {
+            private final CharSequence host;
+            private final StringBuilder text = new StringBuilder();
+            private int[] lineStarts = new int[16];
+            private int[] hostLineStarts = new int[16];
+            private int lineCount;
+            private int fragments;
+            private boolean bash;
+            private boolean inFragment;
+            private boolean opened;
+
+            Builder(@NotNull CharSequence host) {
+                this.host = host;
+                // the shell directive, known once all fragments are in
+                append("", -1);
+            }
+
+            /**
+             * Starts a fragment run by the shell of the dialect; the script is checked as bash when any fragment is.
+             */
+            void beginFragment(@NotNull String dialect) {
+                inFragment = true;
+                opened = false;
+                bash |= dialect.equals("bash");
+            }
+
+            void endFragment() {
+                if (opened) {
+                    append(")", -1);
+                    fragments++;
+                }
+                inFragment = false;
+                opened = false;
+            }
+
+            void addLine(int hostStart, int hostEnd) {
+                addLine(new StringBuilder(host.subSequence(hostStart, hostEnd)), hostStart);
+            }
+
+            /**
+             * {@code $$} becomes {@code " $"} and make references, like {@code $(CC)}, {@code ${FLAGS}} or {@code $<},
+             * are blanked.
+             */
+            void addMakeLine(int hostStart, int hostEnd) {
+                StringBuilder line = new StringBuilder(host.subSequence(hostStart, hostEnd));
+                for (int i = 0; i + 1 < line.length(); i++) {
+                    if (line.charAt(i) != '$') {
+                        continue;
+                    }
+                    char next = line.charAt(i + 1);
+                    if (next == '$') {
+                        line.setCharAt(i, ' ');
+                        i++;
+                    } else if (next == '(' || next == '{') {
+                        int end = findClose(line, i + 1, next, next == '(' ? ')' : '}');
+                        blank(line, i, end);
+                        i = end - 1;
+                    } else {
+                        blank(line, i, i + 2);
+                        i++;
+                    }
+                }
+                addLine(line, hostStart);
+            }
+
+            /**
+             * GitHub expressions, {@code ${{ ... }}}, are blanked.
+             */
+            void addYamlLine(int hostStart, int hostEnd) {
+                StringBuilder line = new StringBuilder(host.subSequence(hostStart, hostEnd));
+                for (int i = line.indexOf("${{"); i >= 0; i = line.indexOf("${{", i)) {
+                    int close = line.indexOf("}}", i + 3);
+                    int end = close >= 0 ? close + 2 : line.length();
+                    blank(line, i, end);
+                    i = end;
+                }
+                addLine(line, hostStart);
+            }
+
+            void addBlankLine() {
+                if (opened) {
+                    append("", -1);
+                }
+            }
+
+            private void addLine(@NotNull CharSequence line, int hostStart) {
+                if (inFragment && !opened) {
+                    append("(", -1);
+                    opened = true;
+                }
+                append(line, hostStart);
+            }
+
+            /**
+             * @return the offset after the matching close, the end of the line when there is none
+             */
+            private static int findClose(@NotNull CharSequence line, int open, char openChar, char closeChar) {
+                int depth = 0;
+                for (int i = open; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (c == openChar) {
+                        depth++;
+                    } else if (c == closeChar && --depth == 0) {
+                        return i + 1;
+                    }
+                }
+                return line.length();
+            }
+
+            private static void blank(@NotNull StringBuilder line, int start, int end) {
+                for (int i = start; i < end; i++) {
+                    line.setCharAt(i, '_');
+                }
+            }
+
+            private void append(@NotNull CharSequence line, int hostStart) {
+                if (lineCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                    hostLineStarts = Arrays.copyOf(hostLineStarts, lineCount * 2);
+                }
+                lineStarts[lineCount] = text.length();
+                hostLineStarts[lineCount] = hostStart;
+                lineCount++;
+                text.append(line).append('\n');
+            }
+
+            @Nullable
+            Script build() {
+                if (fragments == 0) {
+                    return null;
+                }
+                String directive = "# shellcheck shell=" + (bash ? "bash" : "sh");
+                int[] starts = Arrays.copyOf(lineStarts, lineCount);
+                for (int line = 1; line < lineCount; line++) {
+                    starts[line] += directive.length();
+                }
+                return new Script(directive + text, starts, Arrays.copyOf(hostLineStarts, lineCount));
+            }
+        }
+    }
+
+    private static class Lines {
+        private final CharSequence text;
+        private int[] starts = new int[64];
+        private int count;
+
+        Lines(@NotNull CharSequence text) {
+            this.text = text;
+            int start = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == text.length() || text.charAt(i) == '\n') {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = start;
+                    start = i + 1;
+                }
+            }
+        }
+
+        int count() {
+            return count;
+        }
+
+        int start(int line) {
+            return starts[line];
+        }
+
+        int end(int line) {
+            int end = line + 1 < count ? starts[line + 1] - 1 : text.length();
+            return end > starts[line] && text.charAt(end - 1) == '\r' ? end - 1 : end;
+        }
+
+        @NotNull
+        CharSequence text(int line) {
+            return text.subSequence(start(line), end(line));
+        }
+
+        boolean isContinued(int line) {
+            CharSequence lineText = text(line);
+            int end = lineText.length();
+            while (end > 0 && Character.isWhitespace(lineText.charAt(end - 1))) {
+                end--;
+            }
+            return end > 0 && lineText.charAt(end - 1) == '\\';
+        }
+    }
+}
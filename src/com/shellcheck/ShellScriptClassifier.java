@@ -0,0 +1,105 @@
+package com.shellcheck;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.shellcheck.utils.ShellScripts;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Decides whether a file is a shell script shellcheck understands: by file type, or as {@link ShellScripts}
+ * decides it outside the IDE. The answer is kept on the file
+ * until its content or the configured extensions change.
+ */
+final class ShellScriptClassifier {
+    private static final Key<Classification> CLASSIFICATION = Key.create("shellcheck.script.classification");
+
+    private static volatile ParsedExtensions extensions = new ParsedExtensions("");
+
+    private ShellScriptClassifier() {
+    }
+
+    /**
+     * @param fileExtensions comma separated extensions, without the dot
+     */
+    static boolean isShellScript(@NotNull VirtualFile file, @NotNull String fileExtensions) {
+        if (file.isDirectory()) {
+            return false;
+        }
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        long stamp = document != null ? document.getModificationStamp() : file.getModificationStamp();
+        Classification classification = file.getUserData(CLASSIFICATION);
+        if (classification != null && classification.stamp == stamp && classification.fileExtensions.equals(fileExtensions)) {
+            return classification.shellScript;
+        }
+        boolean shellScript = classify(file, document, fileExtensions);
+        file.putUserData(CLASSIFICATION, new Classification(stamp, fileExtensions, shellScript));
+        return shellScript;
+    }
+
+    private static boolean classify(@NotNull VirtualFile file, @Nullable Document document, @NotNull String fileExtensions) {
+        if (file.getFileType().getName().equals("Bash")) {
+            return true;
+        }
+        String extension = file.getExtension();
+        if (extension != null && parse(fileExtensions).contains(extension)) {
+            return true;
+        }
+        CharSequence head = document != null ? document.getImmutableCharSequence() : readHead(file);
+        return ShellScripts.isShellShebang(head);
+    }
+
+    @NotNull
+    private static CharSequence readHead(@NotNull VirtualFile file) {
+        byte[] bytes = new byte[ShellScripts.SHEBANG_LIMIT];
+        int length = 0;
+        try (InputStream stream = file.getInputStream()) {
+            int count;
+            while (length < bytes.length && (count = stream.read(bytes, length, bytes.length - length)) > 0) {
+                length += count;
+            }
+        } catch (IOException e) {
+            return "";
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static Set<String> parse(@NotNull String fileExtensions) {
+        ParsedExtensions parsed = extensions;
+        if (!parsed.source.equals(fileExtensions)) {
+            parsed = new ParsedExtensions(fileExtensions);
+            extensions = parsed;
+        }
+        return parsed.extensions;
+    }
+
+    private static class ParsedExtensions {
+        private final String source;
+        private final Set<String> extensions;
+
+        ParsedExtensions(@NotNull String source) {
+            this.source = source;
+            this.extensions = ShellScripts.parseExtensions(source);
+        }
+    }
+
+    private static class Classification {
+        private final long stamp;
+        private final String fileExtensions;
+        private final boolean shellScript;
+
+        Classification(long stamp, @NotNull String fileExtensions, boolean shellScript) {
+            this.stamp = stamp;
+            this.fileExtensions = fileExtensions;
+            this.shellScript = shellScript;
+        }
+    }
+}
@@ -1,16 +1,29 @@
 package com.shellcheck;
 
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 
 class ShellcheckAnnotationInput {
     private final ShellcheckProjectComponent component;
     private final PsiFile psiFile;
-    private final String fileContent;
+    private final CharSequence fileContent;
+    private final ShellFragments.Script fragments;
 
-    ShellcheckAnnotationInput(ShellcheckProjectComponent component, PsiFile psiFile, String fileContent) {
+    ShellcheckAnnotationInput(ShellcheckProjectComponent component, PsiFile psiFile, CharSequence fileContent) {
         this.component = component;
         this.psiFile = psiFile;
         this.fileContent = fileContent;
+        this.fragments = null;
+    }
+
+    /**
+     * Input for the shell fragments of a file of another language, checked as one synthetic script.
+     */
+    ShellcheckAnnotationInput(ShellcheckProjectComponent component, PsiFile psiFile, ShellFragments.Script fragments) {
+        this.component = component;
+        this.psiFile = psiFile;
+        this.fileContent = fragments.getText();
+        this.fragments = fragments;
     }
 
     ShellcheckProjectComponent getComponent() {
@@ -25,8 +38,20 @@ class ShellcheckAnnotationInput {
         return psiFile.getVirtualFile().getPath();
     }
 
-    String getFileContent() {
+    PsiFile getPsiFile() {
+        return psiFile;
+    }
+
+    VirtualFile getVirtualFile() {
+        return psiFile.getVirtualFile();
+    }
+
+    CharSequence getFileContent() {
         return fileContent;
     }
 
+    ShellFragments.Script getFragments() {
+        return fragments;
+    }
+
 }
@@ -16,6 +16,17 @@ class ShellcheckAnnotationResult {
         this.result = result;
     }
 
+    /**
+     * No result yet, the previous annotations are shown until it arrives.
+     */
+    static ShellcheckAnnotationResult stale(ShellcheckAnnotationInput input) {
+        return new ShellcheckAnnotationResult(input, null);
+    }
+
+    public boolean isStale() {
+        return result == null;
+    }
+
     public List<ShellcheckResult.Issue> getIssues() {
         return Optional.ofNullable(result).map(ShellcheckResult::getIssues).orElse(Collections.emptyList());
     }
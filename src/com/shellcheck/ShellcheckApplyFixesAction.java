@@ -0,0 +1,198 @@
+package com.shellcheck;
+
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.shellcheck.settings.ShellcheckExecutableRegistry;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckScheduler;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies the fixes shellcheck reports for all scripts of the project. The scripts are checked in parallel at
+ * background priority, mostly answered from the caches, and the fixes of each file are merged into
+ * non-overlapping edits. The edits are applied on the EDT in slices of {@link #SLICE_MILLIS}, one command and
+ * so one undo step per file, so a clean up of thousands of files keeps the IDE responsive.
+ */
+public class ShellcheckApplyFixesAction extends AnAction implements DumbAware {
+    private static final long SLICE_MILLIS = 50;
+
+    @Override
+    public void update(AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabled(project != null && project.getComponent(ShellcheckProjectComponent.class).isEnabled());
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        ShellcheckProjectComponent component = project.getComponent(ShellcheckProjectComponent.class);
+        String cwd = project.getBasePath() != null ? project.getBasePath() : ".";
+        ShellcheckExecutableRegistry.Executable executable = ShellcheckExecutableRegistry.getInstance()
+                .getKnown(component.getSettings().shellcheckExecutable, cwd);
+        if (executable == null || !executable.json1) {
+            component.showInfoNotification(ShellcheckBundle.message("shellcheck.fixes.unsupported"), NotificationType.WARNING);
+            return;
+        }
+        new Task.Backgroundable(project, ShellcheckBundle.message("shellcheck.fixes.title"), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                ShellcheckChangeScanner scanner = new ShellcheckChangeScanner(project);
+                Map<String, List<ShellcheckResult.Issue>> issues = scanner.check(scanner.getProjectScripts(indicator), indicator).issues;
+                FixApplier applier = new FixApplier(project, component);
+                collectFixes(component, cwd, issues, applier, indicator);
+                ApplicationManager.getApplication().invokeLater(applier, project.getDisposed());
+            }
+        }.queue();
+    }
+
+    /**
+     * Checks the current text of every file with fixes again, a cache hit unless it changed since the project
+     * was checked, so the edits always match the text they are applied to.
+     */
+    private static void collectFixes(@NotNull ShellcheckProjectComponent component, @NotNull String cwd,
+                                     @NotNull Map<String, List<ShellcheckResult.Issue>> issues, @NotNull FixApplier applier,
+                                     @NotNull ProgressIndicator indicator) {
+        Map<FileFixes, CompletableFuture<ShellcheckResult>> checks = new LinkedHashMap<>();
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        issues.forEach((path, fileIssues) -> {
+            VirtualFile file = fileIssues.stream().anyMatch(ShellcheckResult.Issue::hasFix) ? fileSystem.findFileByPath(path) : null;
+            if (file == null) {
+                return;
+            }
+            FileFixes[] fixes = new FileFixes[1];
+            try {
+                ShellcheckScriptWalker.runReadAction(() -> {
+                    Document document = file.isValid() ? FileDocumentManager.getInstance().getDocument(file) : null;
+                    fixes[0] = document != null ? new FileFixes(document, document.getModificationStamp(), document.getImmutableCharSequence()) : null;
+                }, indicator);
+            } catch (ProcessCanceledException e) {
+                checks.values().forEach(future -> future.cancel(false));
+                throw e;
+            }
+            if (fixes[0] != null) {
+                checks.put(fixes[0], component.getChecker().checkAsync(cwd, path, fixes[0].text,
+                        ShellcheckScheduler.Priority.BACKGROUND));
+            }
+        });
+        int done = 0;
+        for (Map.Entry<FileFixes, CompletableFuture<ShellcheckResult>> entry : checks.entrySet()) {
+            indicator.setFraction((double) done++ / checks.size());
+            ShellcheckResult result;
+            FileFixes fixes = entry.getKey();
+            try {
+                result = ShellcheckRunner.await(entry.getValue(), indicator);
+                if (result.isUnavailable() || StringUtils.isNotEmpty(result.getErrorOutput())) {
+                    continue;
+                }
+                ShellcheckScriptWalker.runReadAction(() -> {
+                    if (fixes.document.getModificationStamp() == fixes.modificationStamp) {
+                        fixes.merged = ShellcheckFixes.merge(new ErrorRange.ColumnIndex(fixes.document), result.getIssues());
+                    }
+                }, indicator);
+            } catch (ProcessCanceledException e) {
+                checks.values().forEach(future -> future.cancel(false));
+                throw e;
+            }
+            if (fixes.merged != null && fixes.merged.fixes > 0) {
+                applier.queue.add(fixes);
+            }
+        }
+    }
+
+    private static class FileFixes {
+        final Document document;
+        final long modificationStamp;
+        final CharSequence text;
+        ShellcheckFixes.Merged merged;
+
+        FileFixes(@NotNull Document document, long modificationStamp, @NotNull CharSequence text) {
+            this.document = document;
+            this.modificationStamp = modificationStamp;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Applies queued files on the EDT until a slice is used up, then posts itself again.
+     */
+    private static class FixApplier implements Runnable {
+        private final Project project;
+        private final ShellcheckProjectComponent component;
+        private final Deque<FileFixes> queue = new ArrayDeque<>();
+        private int fixes;
+        private int files;
+        private int skippedFixes;
+        private int skippedFiles;
+
+        FixApplier(@NotNull Project project, @NotNull ShellcheckProjectComponent component) {
+            this.project = project;
+            this.component = component;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.currentTimeMillis() + SLICE_MILLIS;
+            while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+                apply(queue.poll());
+            }
+            if (!queue.isEmpty()) {
+                ApplicationManager.getApplication().invokeLater(this, project.getDisposed());
+            } else {
+                finished();
+            }
+        }
+
+        private void apply(@NotNull FileFixes fileFixes) {
+            Document document = fileFixes.document;
+            if (document.getModificationStamp() != fileFixes.modificationStamp || !document.isWritable()) {
+                skippedFiles++;
+                return;
+            }
+            CommandProcessor.getInstance().executeCommand(project,
+                    () -> ApplicationManager.getApplication().runWriteAction(() -> ShellcheckFixes.apply(document, fileFixes.merged.edits)),
+                    ShellcheckBundle.message("shellcheck.fixes.command"), null, document);
+            fixes += fileFixes.merged.fixes;
+            skippedFixes += fileFixes.merged.skippedFixes;
+            files++;
+        }
+
+        private void finished() {
+            if (files == 0 && skippedFiles == 0) {
+                component.showInfoNotification(ShellcheckBundle.message("shellcheck.fixes.none"), NotificationType.INFORMATION);
+                return;
+            }
+            StringBuilder message = new StringBuilder(ShellcheckBundle.message("shellcheck.fixes.done", fixes, files));
+            if (skippedFixes > 0) {
+                message.append(ShellcheckBundle.message("shellcheck.fixes.overlapping", skippedFixes));
+            }
+            if (skippedFiles > 0) {
+                message.append(ShellcheckBundle.message("shellcheck.fixes.changed", skippedFiles));
+            }
+            component.showInfoNotification(message.toString(), NotificationType.INFORMATION);
+        }
+    }
+}
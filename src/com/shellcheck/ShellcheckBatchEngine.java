@@ -0,0 +1,240 @@
+package com.shellcheck;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.shellcheck.settings.Settings;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckScheduler;
+import com.shellcheck.utils.SingleFlight;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks saved files for batch inspection runs, in chunks of several files with the same options per shellcheck
+ * process queued as background work on the {@link ShellcheckScheduler}. Files requested by the inspection are queued
+ * and leave the queue as a chunk when it is full or when a process is free, so the chunks hold the files the inspection
+ * asked for while earlier chunks were running, whatever their directory. Every caller gets its own future; a file
+ * is left out of its chunk once all its callers cancelled, and a chunk left without files does not run.
+ */
+class ShellcheckBatchEngine {
+    private static final Logger LOG = Logger.getInstance(ShellcheckBatchEngine.class);
+
+    private static final int CHUNK_SIZE = 32;
+
+    private final Settings settings;
+    private final ShellcheckChecker checker;
+    private final Map<String, CompletableFuture<ShellcheckResult>> pending = new ConcurrentHashMap<>();
+    private final SingleFlight<String, ShellcheckResult> waiters = new SingleFlight<>();
+    private final Map<String, Requested> requested = new LinkedHashMap<>();
+    private int requestedRunning;
+    private volatile boolean disposed;
+
+    ShellcheckBatchEngine(Settings settings, ShellcheckChecker checker) {
+        this.settings = settings;
+        this.checker = checker;
+    }
+
+    @NotNull
+    ShellcheckResult check(@NotNull String cwd, @NotNull String filePath, @Nullable ProgressIndicator indicator) {
+        CompletableFuture<ShellcheckResult> future = pending.get(filePath);
+        if (future == null) {
+            request(cwd, filePath);
+            future = pending.get(filePath);
+        }
+        if (future == null || future.isCancelled()) {
+            // cached, or finished by another batch in the meantime
+            return checker.check(cwd, filePath, null, indicator, ShellcheckScheduler.Priority.BACKGROUND);
+        }
+        return ShellcheckRunner.await(attach(filePath, future), indicator);
+    }
+
+    /**
+     * Checks saved files without waiting; files already cached or finished in the meantime complete right away.
+     */
+    @NotNull
+    Map<String, CompletableFuture<ShellcheckResult>> checkAll(@NotNull String cwd, @NotNull List<String> files) {
+        schedule(cwd, files);
+        Map<String, CompletableFuture<ShellcheckResult>> results = new LinkedHashMap<>();
+        for (String file : files) {
+            CompletableFuture<ShellcheckResult> future = pending.get(file);
+            results.put(file, future != null && !future.isCancelled() ? attach(file, future)
+                    : checker.checkAsync(cwd, file, null, ShellcheckScheduler.Priority.BACKGROUND));
+        }
+        return results;
+    }
+
+    /**
+     * @return a future of the caller for the pending file; the file is cancelled once all callers cancelled theirs
+     */
+    @NotNull
+    private CompletableFuture<ShellcheckResult> attach(@NotNull String file, @NotNull CompletableFuture<ShellcheckResult> future) {
+        return waiters.run(file, () -> future);
+    }
+
+    /**
+     * @return the future of the file in a chunk to be submitted, null when the file is pending already
+     */
+    @Nullable
+    private CompletableFuture<ShellcheckResult> addPending(@NotNull String file) {
+        CompletableFuture<ShellcheckResult> future = new CompletableFuture<>();
+        if (pending.putIfAbsent(file, future) != null) {
+            return null;
+        }
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                pending.remove(file, future);
+            }
+        });
+        return future;
+    }
+
+    private void request(@NotNull String cwd, @NotNull String file) {
+        byte[] content = ShellcheckChecker.readFile(file);
+        if (content == null) {
+            return;
+        }
+        List<String> options = checker.getOptions(file);
+        ShellcheckChecker.CacheKey key = checker.cacheKey(cwd, file, options, content);
+        checker.recordSources(file, key);
+        if (checker.getCached(cwd, key.value) != null || addPending(file) == null) {
+            return;
+        }
+        synchronized (requested) {
+            String group = cwd + "\u0000" + String.join("\u0000", options);
+            Requested chunk = requested.computeIfAbsent(group, g -> new Requested(cwd, options));
+            chunk.keys.put(file, key.value);
+            if (chunk.keys.size() >= CHUNK_SIZE || requestedRunning < ShellcheckScheduler.getInstance().getMaxConcurrency()) {
+                submitRequested(requested.remove(group));
+            }
+        }
+    }
+
+    private void submitRequested(@NotNull Requested chunk) {
+        requestedRunning++;
+        submit(chunk.cwd, chunk.options, new ArrayList<>(chunk.keys.keySet()), chunk.keys).whenComplete((result, error) -> {
+            synchronized (requested) {
+                requestedRunning--;
+                Iterator<Requested> waiting = requested.values().iterator();
+                if (waiting.hasNext()) {
+                    Requested next = waiting.next();
+                    waiting.remove();
+                    submitRequested(next);
+                }
+            }
+        });
+    }
+
+    private void schedule(@NotNull String cwd, @NotNull List<String> files) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        Map<List<String>, List<String>> chunks = new LinkedHashMap<>();
+        for (String file : files) {
+            byte[] content = ShellcheckChecker.readFile(file);
+            if (content == null) {
+                continue;
+            }
+            List<String> options = checker.getOptions(file);
+            ShellcheckChecker.CacheKey key = checker.cacheKey(cwd, file, options, content);
+            checker.recordSources(file, key);
+            if (checker.getCached(cwd, key.value) != null || addPending(file) == null) {
+                continue;
+            }
+            keys.put(file, key.value);
+            List<String> chunk = chunks.computeIfAbsent(options, o -> new ArrayList<>(CHUNK_SIZE));
+            chunk.add(file);
+            if (chunk.size() == CHUNK_SIZE) {
+                submit(cwd, options, chunks.remove(options), keys);
+            }
+        }
+        chunks.forEach((options, chunk) -> submit(cwd, options, chunk, keys));
+    }
+
+    @NotNull
+    private CompletableFuture<Void> submit(@NotNull String cwd, @NotNull List<String> options, @NotNull List<String> chunk,
+                                           @NotNull Map<String, String> keys) {
+        Map<String, CompletableFuture<ShellcheckResult>> futures = new LinkedHashMap<>();
+        for (String file : chunk) {
+            CompletableFuture<ShellcheckResult> future = pending.get(file);
+            if (future != null) {
+                futures.put(file, future);
+            }
+        }
+        return ShellcheckScheduler.getInstance().submit(ShellcheckScheduler.Priority.BACKGROUND, () -> {
+            futures.values().removeIf(CompletableFuture::isCancelled);
+            List<String> files = new ArrayList<>(futures.keySet());
+            Map<String, ShellcheckResult> results = null;
+            if (files.size() > 1) {
+                try {
+                    results = ShellcheckRunner.runBatchCheck(settings.shellcheckExecutable, cwd, options, files,
+                            () -> disposed || futures.values().stream().allMatch(CompletableFuture::isCancelled));
+                } catch (ExecutionException e) {
+                    LOG.info("Batch shellcheck run failed, checking files one by one: " + e.getMessage());
+                } catch (ProcessCanceledException e) {
+                    cancel(futures);
+                    return null;
+                }
+            }
+            for (String file : files) {
+                CompletableFuture<ShellcheckResult> future = futures.get(file);
+                try {
+                    ShellcheckResult result = results != null ? results.get(file) : null;
+                    if (result == null) {
+                        if (future.isCancelled()) {
+                            continue;
+                        }
+                        result = ShellcheckRunner.runCheck(settings.shellcheckExecutable, cwd, options, file, null,
+                                () -> disposed || future.isCancelled());
+                    }
+                    checker.putCached(cwd, keys.get(file), result, true);
+                    pending.remove(file, future);
+                    future.complete(result);
+                } catch (ProcessCanceledException e) {
+                    if (disposed) {
+                        cancel(futures);
+                        return null;
+                    }
+                } catch (RuntimeException e) {
+                    pending.remove(file, future);
+                    future.completeExceptionally(e);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Stops the running chunks and cancels the files waiting for one; called when the project closes.
+     */
+    void dispose() {
+        disposed = true;
+        pending.values().forEach(future -> future.cancel(false));
+    }
+
+    private void cancel(@NotNull Map<String, CompletableFuture<ShellcheckResult>> futures) {
+        futures.forEach((file, future) -> {
+            pending.remove(file, future);
+            future.cancel(false);
+        });
+    }
+
+    private static final class Requested {
+        final String cwd;
+        final List<String> options;
+        final Map<String, String> keys = new LinkedHashMap<>();
+
+        Requested(@NotNull String cwd, @NotNull List<String> options) {
+            this.cwd = cwd;
+            this.options = options;
+        }
+    }
+}
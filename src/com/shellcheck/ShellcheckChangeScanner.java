@@ -0,0 +1,200 @@
+package com.shellcheck;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckScheduler;
+import com.shellcheck.utils.ShellcheckSeverity;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks a set of files, typically the changed ones, instead of the whole project. Saved files go through the
+ * batch engine and unsaved ones through the checker, all at background priority, so the number of processes is
+ * bounded by the scheduler and content checked before, in the editor or by the project analyzer, is answered
+ * from the caches.
+ */
+class ShellcheckChangeScanner {
+    private final Project project;
+    private final ShellcheckProjectComponent component;
+
+    ShellcheckChangeScanner(@NotNull Project project) {
+        this.project = project;
+        this.component = project.getComponent(ShellcheckProjectComponent.class);
+    }
+
+    /**
+     * Shell scripts in the local changes of the project.
+     */
+    @NotNull
+    List<VirtualFile> getChangedFiles() {
+        return filterScripts(ChangeListManager.getInstance(project).getAffectedFiles());
+    }
+
+    /**
+     * Shell scripts in the project content, found in short read actions that stop when the indicator is cancelled.
+     */
+    @NotNull
+    List<VirtualFile> getProjectScripts(@NotNull ProgressIndicator indicator) {
+        return ShellcheckScriptWalker.findProjectScripts(project, component.getSettings().scriptExtensions, indicator);
+    }
+
+    /**
+     * Shell scripts changed since the branch diverged from the base branch, committed or not.
+     */
+    @NotNull
+    List<VirtualFile> getChangedFiles(@NotNull String baseBranch) throws ExecutionException {
+        if (!isValidBranch(baseBranch)) {
+            throw new ExecutionException("Invalid branch " + baseBranch);
+        }
+        GeneralCommandLine commandLine = new GeneralCommandLine("git", "diff", "--name-only", "--relative", "--diff-filter=d",
+                baseBranch + "...HEAD");
+        commandLine.setWorkDirectory(getCwd());
+        ProcessOutput output = ShellcheckRunner.execute(commandLine);
+        if (output.getExitCode() != 0) {
+            throw new ExecutionException(StringUtils.defaultIfEmpty(output.getStderr().trim(), "git diff failed"));
+        }
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        for (String path : StringUtil.splitByLines(output.getStdout())) {
+            VirtualFile file = fileSystem.refreshAndFindFileByPath(getCwd() + "/" + path.trim());
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        files.addAll(ChangeListManager.getInstance(project).getAffectedFiles());
+        return filterScripts(files);
+    }
+
+    /**
+     * Whether the value can be passed to git as a branch; a leading dash would make it an option.
+     */
+    static boolean isValidBranch(@NotNull String branch) {
+        return !branch.isEmpty() && !branch.startsWith("-") && branch.chars().noneMatch(Character::isWhitespace);
+    }
+
+    /**
+     * @return the issues of every file that could be checked and the files that could not
+     */
+    @NotNull
+    Results check(@NotNull Collection<VirtualFile> files, @Nullable ProgressIndicator indicator) {
+        String cwd = getCwd();
+        Map<String, CharSequence> unsaved = new HashMap<>();
+        List<String> saved = new ArrayList<>();
+        ApplicationManager.getApplication().runReadAction(() -> {
+            FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
+            for (VirtualFile file : files) {
+                Document document = fileDocumentManager.getCachedDocument(file);
+                if (document != null && fileDocumentManager.isFileModified(file)) {
+                    unsaved.put(file.getPath(), document.getImmutableCharSequence());
+                } else {
+                    saved.add(file.getPath());
+                }
+            }
+        });
+
+        Map<String, CompletableFuture<ShellcheckResult>> futures = new LinkedHashMap<>(component.getBatchEngine().checkAll(cwd, saved));
+        unsaved.forEach((path, content) -> futures.put(path,
+                component.getChecker().checkAsync(cwd, path, content, ShellcheckScheduler.Priority.BACKGROUND)));
+        return await(futures, indicator);
+    }
+
+    /**
+     * Checks other versions of the files than their current content, e.g. as last committed, by path.
+     */
+    @NotNull
+    Results checkRevisions(@NotNull Map<String, CharSequence> contents, @Nullable ProgressIndicator indicator) {
+        String cwd = getCwd();
+        Map<String, CompletableFuture<ShellcheckResult>> futures = new LinkedHashMap<>();
+        contents.forEach((path, content) -> futures.put(path,
+                component.getChecker().checkRevisionAsync(cwd, path, content, ShellcheckScheduler.Priority.BACKGROUND)));
+        return await(futures, indicator);
+    }
+
+    /**
+     * Whether the issue has error severity with the severity settings of the project.
+     */
+    boolean isError(@NotNull ShellcheckResult.Issue issue) {
+        return ShellcheckSeverity.of(issue, component.getSettings().treatAllIssuesAsWarnings) == ShellcheckSeverity.ERROR;
+    }
+
+    @NotNull
+    private static Results await(@NotNull Map<String, CompletableFuture<ShellcheckResult>> futures, @Nullable ProgressIndicator indicator) {
+        Results results = new Results();
+        int done = 0;
+        for (Map.Entry<String, CompletableFuture<ShellcheckResult>> entry : futures.entrySet()) {
+            if (indicator != null) {
+                indicator.setText2(entry.getKey());
+                indicator.setFraction((double) done++ / futures.size());
+            }
+            ShellcheckResult result;
+            try {
+                result = ShellcheckRunner.await(entry.getValue(), indicator);
+            } catch (ProcessCanceledException e) {
+                futures.values().forEach(future -> future.cancel(false));
+                throw e;
+            }
+            if (!result.isUnavailable() && StringUtils.isEmpty(result.getErrorOutput())) {
+                results.issues.put(entry.getKey(), result.getIssues());
+            } else {
+                String reason = StringUtils.trimToEmpty(result.getErrorOutput());
+                results.unchecked.put(entry.getKey(), reason.isEmpty() ? ShellcheckBundle.message("shellcheck.unchecked.unknown")
+                        : StringUtil.splitByLines(reason)[0]);
+            }
+        }
+        return results;
+    }
+
+    @NotNull
+    List<VirtualFile> filterScripts(@NotNull Collection<VirtualFile> files) {
+        String extensions = component.getSettings().scriptExtensions;
+        List<VirtualFile> scripts = new ArrayList<>();
+        ApplicationManager.getApplication().runReadAction(() -> {
+            for (VirtualFile file : files) {
+                if (file.isValid() && file.isInLocalFileSystem() && ShellScriptClassifier.isShellScript(file, extensions)) {
+                    scripts.add(file);
+                }
+            }
+        });
+        return scripts;
+    }
+
+    @NotNull
+    private String getCwd() {
+        return project.getBasePath() != null ? project.getBasePath() : ".";
+    }
+
+    static final class Results {
+        /**
+         * Issues of the checked files, by path.
+         */
+        final Map<String, List<ShellcheckResult.Issue>> issues = new LinkedHashMap<>();
+        /**
+         * The first line of the failure of every file that could not be checked, by path.
+         */
+        final Map<String, String> unchecked = new LinkedHashMap<>();
+    }
+}
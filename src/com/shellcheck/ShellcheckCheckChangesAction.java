@@ -0,0 +1,101 @@
+package com.shellcheck;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.InputValidator;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks only the changed scripts, either the local changes or everything changed since the current branch
+ * diverged from a base branch, and lists the issues in a tab of the Shellcheck Problems tool window.
+ */
+public class ShellcheckCheckChangesAction extends AnAction implements DumbAware {
+    private final boolean againstBranch;
+
+    public ShellcheckCheckChangesAction() {
+        this(false);
+    }
+
+    ShellcheckCheckChangesAction(boolean againstBranch) {
+        this.againstBranch = againstBranch;
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabled(project != null && project.getComponent(ShellcheckProjectComponent.class).isEnabled());
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+        ShellcheckProjectComponent component = project.getComponent(ShellcheckProjectComponent.class);
+        String baseBranch = null;
+        if (againstBranch) {
+            baseBranch = Messages.showInputDialog(project, ShellcheckBundle.message("shellcheck.changes.base.branch"),
+                    ShellcheckBundle.message("shellcheck.changes.title"), null, component.getSettings().baseBranch, new InputValidator() {
+                        @Override
+                        public boolean checkInput(String inputString) {
+                            return ShellcheckChangeScanner.isValidBranch(inputString.trim());
+                        }
+
+                        @Override
+                        public boolean canClose(String inputString) {
+                            return checkInput(inputString);
+                        }
+                    });
+            if (baseBranch == null || baseBranch.trim().isEmpty()) {
+                return;
+            }
+            baseBranch = baseBranch.trim();
+            component.getSettings().baseBranch = baseBranch;
+        }
+        String base = baseBranch;
+        String title = base != null ? ShellcheckBundle.message("shellcheck.changes.tab.branch", base) : ShellcheckBundle.message("shellcheck.changes.tab");
+        new Task.Backgroundable(project, ShellcheckBundle.message("shellcheck.changes.title"), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                ShellcheckChangeScanner scanner = new ShellcheckChangeScanner(project);
+                List<VirtualFile> files;
+                try {
+                    files = base != null ? scanner.getChangedFiles(base) : scanner.getChangedFiles();
+                } catch (ExecutionException ex) {
+                    component.showInfoNotification(ShellcheckBundle.message("shellcheck.changes.git.failed", ex.getMessage()), NotificationType.WARNING);
+                    return;
+                }
+                ShellcheckChangeScanner.Results results = scanner.check(files, indicator);
+                if (!results.unchecked.isEmpty()) {
+                    Map.Entry<String, String> first = results.unchecked.entrySet().iterator().next();
+                    component.showInfoNotification(ShellcheckBundle.message("shellcheck.changes.unchecked", results.unchecked.size(),
+                            first.getKey(), first.getValue()), NotificationType.WARNING);
+                }
+                ApplicationManager.getApplication().invokeLater(
+                        () -> ShellcheckProblemsToolWindowFactory.showResults(project, title, results.issues), project.getDisposed());
+            }
+        }.queue();
+    }
+
+    /**
+     * Registered separately, actions are instantiated by class name.
+     */
+    public static class AgainstBranch extends ShellcheckCheckChangesAction {
+        public AgainstBranch() {
+            super(true);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.shellcheck;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.shellcheck.settings.Settings;
+import com.shellcheck.settings.ShellcheckApplicationSettings;
+import com.shellcheck.utils.ShellScripts;
+import com.shellcheck.utils.ShellcheckMetrics;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckResultCache;
+import com.shellcheck.utils.ShellcheckResultStore;
+import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckScheduler;
+import com.shellcheck.utils.ShellcheckSourceGraph;
+import com.shellcheck.utils.SingleFlight;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+class ShellcheckChecker {
+    private static final Logger LOG = Logger.getInstance(ShellcheckChecker.class);
+
+    private final Settings settings;
+    private final String cwd;
+    private final ShellcheckTriggerPolicy triggerPolicy;
+    private final ShellcheckOptionsResolver optionsResolver;
+    private final ShellcheckResultCache cache;
+    private final ShellcheckResultStore store;
+    private final SingleFlight<String, ShellcheckResult> inFlight = new SingleFlight<>();
+    private final ShellcheckSourceGraph sourceGraph = new ShellcheckSourceGraph();
+    private String warmExecutable;
+
+    ShellcheckChecker(Settings settings, String cwd, ShellcheckTriggerPolicy triggerPolicy, ShellcheckOptionsResolver optionsResolver,
+                      File storeFile) {
+        this.settings = settings;
+        this.cwd = cwd;
+        this.triggerPolicy = triggerPolicy;
+        this.optionsResolver = optionsResolver;
+        this.cache = new ShellcheckResultCache(settings.resultCacheSize);
+        this.store = new ShellcheckResultStore(storeFile);
+    }
+
+    ShellcheckResultCache getCache() {
+        return cache;
+    }
+
+    ShellcheckSourceGraph getSourceGraph() {
+        return sourceGraph;
+    }
+
+    void settingsChanged() {
+        cache.setMaxSize(settings.resultCacheSize);
+        ShellcheckApplicationSettings.getInstance().apply();
+        invalidateWarmProcesses();
+    }
+
+    void dispose() {
+        store.close();
+        invalidateWarmProcesses();
+    }
+
+    /**
+     * Destroys the warm processes of this project, also those of the executable of the previous settings.
+     */
+    synchronized void invalidateWarmProcesses() {
+        if (warmExecutable != null && !warmExecutable.equals(settings.shellcheckExecutable)) {
+            ShellcheckRunner.invalidateWarmProcesses(warmExecutable, cwd);
+        }
+        ShellcheckRunner.invalidateWarmProcesses(settings.shellcheckExecutable, cwd);
+        warmExecutable = settings.shellcheckExecutable;
+    }
+
+    /**
+     * Whether runs are refused after repeated failures of the executable.
+     */
+    boolean isPaused(@NotNull String cwd) {
+        return ShellcheckRunner.isPaused(settings.shellcheckExecutable, cwd);
+    }
+
+    @NotNull
+    ShellcheckResult check(@NotNull String cwd, @NotNull String filePath, @Nullable CharSequence content, @Nullable ProgressIndicator indicator,
+                           @NotNull ShellcheckScheduler.Priority priority) {
+        return ShellcheckRunner.await(checkAsync(cwd, filePath, content, priority), indicator);
+    }
+
+    /**
+     * The options of a check of the file: output format, following sourced files and filtering options.
+     */
+    @NotNull
+    List<String> getOptions(@NotNull String filePath) {
+        return optionsResolver.getOptions(filePath);
+    }
+
+    /**
+     * Answers from the caches or queues a run; callers asking for the same file, content and options
+     * while a run is in flight share it.
+     */
+    @NotNull
+    CompletableFuture<ShellcheckResult> checkAsync(@NotNull String cwd, @NotNull String filePath, @Nullable CharSequence content,
+                                                   @NotNull ShellcheckScheduler.Priority priority) {
+        return checkAsync(cwd, filePath, content, priority, true);
+    }
+
+    /**
+     * Checks another version of the file than its current content, e.g. the last committed one; like
+     * {@link #checkAsync} but leaves the source graph alone, which only describes current content.
+     */
+    @NotNull
+    CompletableFuture<ShellcheckResult> checkRevisionAsync(@NotNull String cwd, @NotNull String filePath, @NotNull CharSequence content,
+                                                           @NotNull ShellcheckScheduler.Priority priority) {
+        return checkAsync(cwd, filePath, content, priority, false);
+    }
+
+    @NotNull
+    private CompletableFuture<ShellcheckResult> checkAsync(@NotNull String cwd, @NotNull String filePath, @Nullable CharSequence content,
+                                                           @NotNull ShellcheckScheduler.Priority priority, boolean current) {
+        List<String> options = getOptions(filePath);
+        CacheKey key;
+        if (content != null) {
+            key = cacheKey(cwd, filePath, options, content);
+        } else {
+            byte[] bytes = readFile(filePath);
+            if (bytes == null) {
+                return ShellcheckRunner.runCheckAsync(settings.shellcheckExecutable, cwd, options, filePath, null, priority);
+            }
+            key = cacheKey(cwd, filePath, options, bytes);
+        }
+        if (current) {
+            recordSources(filePath, key);
+        }
+        ShellcheckResult cached = getCached(cwd, key.value);
+        ShellcheckMetrics.getInstance().recordCacheLookup(cached != null);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return inFlight.run(filePath + "\u0000" + key.value, () -> {
+            CompletableFuture<ShellcheckResult> run = ShellcheckRunner.runCheckAsync(settings.shellcheckExecutable, cwd, options, filePath, content, priority);
+            run.thenAccept(result -> {
+                putCached(cwd, key.value, result, content == null);
+                if (current && result.getRunNanos() > 0) {
+                    triggerPolicy.recordRun(filePath, result.getRunNanos());
+                }
+            });
+            return run;
+        });
+    }
+
+    /**
+     * Key of the content checked with the options of {@link #getOptions(String)}, which are part of it. Computing it
+     * has no effects; see {@link #recordSources}.
+     */
+    @NotNull
+    CacheKey cacheKey(@NotNull String cwd, @NotNull String filePath, @NotNull List<String> options, @NotNull byte[] content) {
+        List<String> sources = ShellcheckSourceGraph.findSources(content, filePath, cwd);
+        return new CacheKey(ShellcheckResultCache.key(stamp(cwd, filePath, sources), options, content), sources);
+    }
+
+    @NotNull
+    CacheKey cacheKey(@NotNull String cwd, @NotNull String filePath, @NotNull List<String> options, @NotNull CharSequence content) {
+        List<String> sources = ShellcheckSourceGraph.findSources(content, filePath, cwd);
+        return new CacheKey(ShellcheckResultCache.key(stamp(cwd, filePath, sources), options, content), sources);
+    }
+
+    /**
+     * Records the sources of the key in the source graph; only for the current content of the file, never for
+     * another version of it.
+     */
+    void recordSources(@NotNull String filePath, @NotNull CacheKey key) {
+        sourceGraph.update(filePath, key.sources);
+    }
+
+    /**
+     * Stamp of the executable, of the dialect the extension of the file implies and of every file the script sources,
+     * directly or not, since shellcheck follows them.
+     */
+    @NotNull
+    private String stamp(@NotNull String cwd, @NotNull String filePath, @NotNull List<String> sources) {
+        StringBuilder stamp = new StringBuilder(ShellcheckResultCache.executableStamp(settings.shellcheckExecutable, cwd));
+        String shell = ShellScripts.getExtensionShell(filePath);
+        if (shell != null) {
+            stamp.append("|shell=").append(shell);
+        }
+        for (String sourceStamp : sourceGraph.getSourceStamps(filePath, sources, cwd)) {
+            stamp.append('|').append(sourceStamp);
+        }
+        return stamp.toString();
+    }
+
+    @Nullable
+    ShellcheckResult getCached(@NotNull String cwd, @NotNull String key) {
+        ShellcheckResult result = cache.get(key);
+        if (result == null) {
+            List<ShellcheckResult.Issue> stored = store.get(storeStamp(cwd), key);
+            if (stored != null) {
+                result = new ShellcheckResult(stored, "");
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Caches a successful result; only results of saved files are persisted, since the content of an unsaved
+     * buffer is unlikely to be checked again after the next keystroke.
+     */
+    void putCached(@NotNull String cwd, @NotNull String key, @NotNull ShellcheckResult result, boolean persistent) {
+        if (StringUtils.isEmpty(result.getErrorOutput())) {
+            cache.put(key, result);
+            if (persistent) {
+                store.put(storeStamp(cwd), key, result.getIssues());
+            }
+        }
+    }
+
+    @NotNull
+    private String storeStamp(@NotNull String cwd) {
+        return ShellcheckResultCache.executableStamp(settings.shellcheckExecutable, cwd);
+    }
+
+    @Nullable
+    static byte[] readFile(@NotNull String filePath) {
+        try {
+            return Files.readAllBytes(Paths.get(filePath));
+        } catch (IOException e) {
+            LOG.debug("Cannot read " + filePath + ", skipping result cache", e);
+            return null;
+        }
+    }
+
+    static final class CacheKey {
+        final String value;
+        final List<String> sources;
+
+        CacheKey(@NotNull String value, @NotNull List<String> sources) {
+            this.value = value;
+            this.sources = sources;
+        }
+    }
+}
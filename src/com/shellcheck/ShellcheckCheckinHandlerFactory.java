@@ -0,0 +1,206 @@
+package com.shellcheck;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.CheckinProjectPanel;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.CommitContext;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vcs.checkin.CheckinHandler;
+import com.intellij.openapi.vcs.checkin.CheckinHandlerFactory;
+import com.intellij.openapi.vcs.ui.RefreshableOnComponent;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.NonFocusableCheckBox;
+import com.shellcheck.settings.Settings;
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import java.awt.BorderLayout;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Stops commits adding shellcheck errors. Only the committed scripts are checked, together with their last
+ * committed versions; an error counts as new when its code and message occur more often than before, so
+ * errors that only moved do not block. Content checked before, typically all of it, comes from the caches.
+ * Committed scripts that could not be checked are listed too rather than let through silently.
+ */
+public class ShellcheckCheckinHandlerFactory extends CheckinHandlerFactory {
+
+    @NotNull
+    @Override
+    public CheckinHandler createHandler(@NotNull CheckinProjectPanel panel, @NotNull CommitContext commitContext) {
+        return new Handler(panel);
+    }
+
+    private static class Handler extends CheckinHandler {
+        private static final int MAX_LISTED_FILES = 10;
+
+        private final CheckinProjectPanel panel;
+        private final Project project;
+        private final ShellcheckProjectComponent component;
+
+        Handler(@NotNull CheckinProjectPanel panel) {
+            this.panel = panel;
+            this.project = panel.getProject();
+            this.component = project.getComponent(ShellcheckProjectComponent.class);
+        }
+
+        @Override
+        public RefreshableOnComponent getBeforeCheckinConfigurationPanel() {
+            if (!component.isEnabled()) {
+                return null;
+            }
+            Settings settings = component.getSettings();
+            NonFocusableCheckBox checkBox = new NonFocusableCheckBox(ShellcheckBundle.message("shellcheck.commit.check"));
+            return new RefreshableOnComponent() {
+                @Override
+                public JComponent getComponent() {
+                    JPanel panel = new JPanel(new BorderLayout());
+                    panel.add(checkBox);
+                    return panel;
+                }
+
+                @Override
+                public void refresh() {
+                }
+
+                @Override
+                public void saveState() {
+                    settings.checkBeforeCommit = checkBox.isSelected();
+                }
+
+                @Override
+                public void restoreState() {
+                    checkBox.setSelected(settings.checkBeforeCommit);
+                }
+            };
+        }
+
+        @Override
+        public ReturnResult beforeCheckin() {
+            if (!component.isEnabled() || !component.getSettings().checkBeforeCommit || !component.isSettingsValid()) {
+                return ReturnResult.COMMIT;
+            }
+            ShellcheckChangeScanner scanner = new ShellcheckChangeScanner(project);
+            List<VirtualFile> files = scanner.filterScripts(panel.getVirtualFiles());
+            if (files.isEmpty()) {
+                return ReturnResult.COMMIT;
+            }
+            ShellcheckChangeScanner.Results[] results = new ShellcheckChangeScanner.Results[2];
+            boolean completed = ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+                ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+                results[0] = scanner.check(files, indicator);
+                results[1] = scanner.checkRevisions(getCommittedContents(files), indicator);
+            }, ShellcheckBundle.message("shellcheck.commit.progress"), true, project);
+            if (!completed) {
+                return ReturnResult.CANCEL;
+            }
+            ShellcheckChangeScanner.Results current = results[0];
+            ShellcheckChangeScanner.Results previous = results[1];
+
+            // a committed version that could not be checked counts as clean, so every error of the file is new
+            Map<String, List<ShellcheckResult.Issue>> newErrors = new LinkedHashMap<>();
+            current.issues.forEach((path, fileIssues) -> {
+                List<ShellcheckResult.Issue> added = getNewErrors(scanner, fileIssues, previous.issues.getOrDefault(path, Collections.emptyList()));
+                if (!added.isEmpty()) {
+                    newErrors.put(path, added);
+                }
+            });
+            if (newErrors.isEmpty() && current.unchecked.isEmpty()) {
+                return ReturnResult.COMMIT;
+            }
+
+            StringBuilder message = new StringBuilder();
+            if (!newErrors.isEmpty()) {
+                int errorCount = newErrors.values().stream().mapToInt(List::size).sum();
+                message.append(ShellcheckBundle.message("shellcheck.commit.errors", errorCount, newErrors.size()));
+            }
+            if (!current.unchecked.isEmpty()) {
+                appendUnchecked(message, current.unchecked);
+            }
+            if (newErrors.isEmpty()) {
+                int answer = Messages.showOkCancelDialog(project, message.toString(), ShellcheckBundle.message("shellcheck.name"),
+                        ShellcheckBundle.message("shellcheck.commit.anyway"), Messages.CANCEL_BUTTON, Messages.getWarningIcon());
+                return answer == Messages.OK ? ReturnResult.COMMIT : ReturnResult.CANCEL;
+            }
+            int answer = Messages.showYesNoCancelDialog(project, message.toString(),
+                    ShellcheckBundle.message("shellcheck.name"),
+                    ShellcheckBundle.message("shellcheck.commit.review"),
+                    ShellcheckBundle.message("shellcheck.commit.anyway"),
+                    Messages.CANCEL_BUTTON, Messages.getWarningIcon());
+            if (answer == Messages.YES) {
+                ShellcheckProblemsToolWindowFactory.showResults(project, ShellcheckBundle.message("shellcheck.commit.tab"), newErrors);
+                return ReturnResult.CLOSE_WINDOW;
+            }
+            return answer == Messages.NO ? ReturnResult.COMMIT : ReturnResult.CANCEL;
+        }
+
+        /**
+         * Lists the files that could not be checked with the reason, the first few of them.
+         */
+        private void appendUnchecked(@NotNull StringBuilder message, @NotNull Map<String, String> unchecked) {
+            if (message.length() > 0) {
+                message.append("\n\n");
+            }
+            message.append(ShellcheckBundle.message("shellcheck.commit.unchecked", unchecked.size()));
+            String basePath = project.getBasePath();
+            unchecked.entrySet().stream().limit(MAX_LISTED_FILES).forEach(entry -> {
+                String relative = basePath != null ? FileUtil.getRelativePath(basePath, entry.getKey(), '/') : null;
+                message.append("\n").append(relative != null ? relative : entry.getKey()).append(": ").append(entry.getValue());
+            });
+            if (unchecked.size() > MAX_LISTED_FILES) {
+                message.append("\n").append(ShellcheckBundle.message("shellcheck.commit.unchecked.more", unchecked.size() - MAX_LISTED_FILES));
+            }
+        }
+
+        @NotNull
+        private Map<String, CharSequence> getCommittedContents(@NotNull List<VirtualFile> files) {
+            Set<String> paths = files.stream().map(VirtualFile::getPath).collect(Collectors.toSet());
+            Map<String, CharSequence> contents = new LinkedHashMap<>();
+            for (Change change : panel.getSelectedChanges()) {
+                ContentRevision before = change.getBeforeRevision();
+                ContentRevision after = change.getAfterRevision();
+                if (before == null || after == null || !paths.contains(after.getFile().getPath())) {
+                    continue;
+                }
+                try {
+                    String content = before.getContent();
+                    if (content != null) {
+                        contents.put(after.getFile().getPath(), content);
+                    }
+                } catch (VcsException e) {
+                    // without the previous version all errors of the file count as new
+                }
+            }
+            return contents;
+        }
+
+        @NotNull
+        private static List<ShellcheckResult.Issue> getNewErrors(@NotNull ShellcheckChangeScanner scanner,
+                                                                 @NotNull List<ShellcheckResult.Issue> issues,
+                                                                 @NotNull List<ShellcheckResult.Issue> previousIssues) {
+            Map<String, Integer> previousErrors = new HashMap<>();
+            for (ShellcheckResult.Issue issue : previousIssues) {
+                if (scanner.isError(issue)) {
+                    previousErrors.merge(issue.getFormattedMessage(), 1, Integer::sum);
+                }
+            }
+            return issues.stream()
+                    .filter(issue -> scanner.isError(issue))
+                    .filter(issue -> previousErrors.merge(issue.getFormattedMessage(), -1, Integer::sum) < 0)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -1,35 +1,53 @@
 package com.shellcheck;
 
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.lang.annotation.Annotation;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
-import com.intellij.notification.NotificationType;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.FileViewProvider;
 import com.intellij.psi.MultiplePsiFilesPerDocumentFileViewProvider;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.DocumentUtil;
+import com.shellcheck.utils.ShellcheckMetrics;
 import com.shellcheck.utils.ShellcheckResult;
 import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckScheduler;
+import com.shellcheck.utils.ShellcheckSeverity;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
 
 public class ShellcheckExternalAnnotator extends ExternalAnnotator<ShellcheckAnnotationInput, ShellcheckAnnotationResult> {
 
     private static final Logger LOG = Logger.getInstance(ShellcheckExternalAnnotator.class);
 
+    private final boolean batch;
+
+    public ShellcheckExternalAnnotator() {
+        this(false);
+    }
+
+    ShellcheckExternalAnnotator(boolean batch) {
+        this.batch = batch;
+    }
+
     @Nullable
     @Override
     public ShellcheckAnnotationInput collectInformation(@NotNull PsiFile file, @NotNull Editor editor, boolean hasErrors) {
@@ -46,16 +64,34 @@ public class ShellcheckExternalAnnotator extends ExternalAnnotator<ShellcheckAnn
         if (virtualFile == null || !virtualFile.isInLocalFileSystem()) {
             return null;
         }
-        if (file.getViewProvider() instanceof MultiplePsiFilesPerDocumentFileViewProvider) {
+        ShellcheckProjectComponent component = file.getProject().getComponent(ShellcheckProjectComponent.class);
+        if (!component.isSettingsValid() || !component.isEnabled()) {
             return null;
         }
-        ShellcheckProjectComponent component = file.getProject().getComponent(ShellcheckProjectComponent.class);
-        if (!component.isSettingsValid() || !component.isEnabled() || !isShellcheckFile(file)) {
+        FileViewProvider viewProvider = file.getViewProvider();
+        if (!ShellScriptClassifier.isShellScript(virtualFile, component.getSettings().scriptExtensions)) {
+            return collectFragments(file, component);
+        }
+        if (viewProvider instanceof MultiplePsiFilesPerDocumentFileViewProvider) {
             return null;
         }
         FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
         boolean fileModified = fileDocumentManager.isFileModified(virtualFile);
-        return new ShellcheckAnnotationInput(component, file, fileModified ? file.getText() : null);
+        return new ShellcheckAnnotationInput(component, file, fileModified ? file.getViewProvider().getContents() : null);
+    }
+
+    /**
+     * Shell code embedded in Dockerfiles, Makefiles and CI YAML files, checked once per file through the base
+     * language root of the file.
+     */
+    @Nullable
+    private static ShellcheckAnnotationInput collectFragments(@NotNull PsiFile file, @NotNull ShellcheckProjectComponent component) {
+        ShellFragments.Host host = component.getSettings().checkShellFragments ? ShellFragments.getHost(file.getName()) : null;
+        if (host == null || file.getLanguage() != file.getViewProvider().getBaseLanguage()) {
+            return null;
+        }
+        ShellFragments.Script fragments = ShellFragments.extract(host, file.getViewProvider().getContents());
+        return fragments != null ? new ShellcheckAnnotationInput(component, file, fragments) : null;
     }
 
     @Nullable
@@ -63,16 +99,44 @@ public class ShellcheckExternalAnnotator extends ExternalAnnotator<ShellcheckAnn
     public ShellcheckAnnotationResult doAnnotate(ShellcheckAnnotationInput input) {
         ShellcheckProjectComponent component = input.getComponent();
         try {
-            ShellcheckResult result = ShellcheckRunner.runCheck(component.getSettings().shellcheckExecutable, input.getCwd(), input.getFilePath(), input.getFileContent());
+            ShellcheckResult result;
+            ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+            if (batch && input.getFileContent() == null) {
+                result = component.getBatchEngine().check(input.getCwd(), input.getFilePath(), indicator);
+            } else if (batch) {
+                result = component.getChecker().check(input.getCwd(), input.getFilePath(), input.getFileContent(), indicator,
+                        ShellcheckScheduler.Priority.BACKGROUND);
+            } else if (isDeferred(input)) {
+                component.getTriggerPolicy().checkWhenIdle(input.getPsiFile());
+                return ShellcheckAnnotationResult.stale(input);
+            } else {
+                ShellcheckChecker checker = component.getChecker();
+                CompletableFuture<ShellcheckResult> future = checker.checkAsync(input.getCwd(), input.getFilePath(),
+                        input.getFileContent(), ShellcheckScheduler.Priority.FOREGROUND);
+                Document document = FileDocumentManager.getInstance().getCachedDocument(input.getVirtualFile());
+                StaleAnnotations staleAnnotations = component.getStaleAnnotations();
+                if (!future.isDone() && document != null && staleAnnotations.isPresent(document) && !checker.isPaused(input.getCwd())) {
+                    long modificationStamp = document.getModificationStamp();
+                    staleAnnotations.setPending(document, future);
+                    future.thenAccept(pending -> pendingResultArrived(input, document, modificationStamp, future, pending));
+                    return ShellcheckAnnotationResult.stale(input);
+                }
+                result = ShellcheckRunner.await(future, indicator);
+            }
 
+            if (result.isUnavailable()) {
+                return null;
+            }
             if (StringUtils.isNotEmpty(result.getErrorOutput())) {
-                component.showInfoNotification(result.getErrorOutput(), NotificationType.WARNING);
+                component.reportFailure(result.getErrorOutput());
                 return null;
             }
             return new ShellcheckAnnotationResult(input, result);
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (Exception e) {
-            LOG.error("Error running Shellcheck inspection: ", e);
-            component.showInfoNotification("Error running Shellcheck inspection: " + e.getMessage(), NotificationType.ERROR);
+            LOG.warn("Error running Shellcheck inspection", e);
+            component.reportFailure("Error running Shellcheck inspection: " + e.getMessage());
         }
         return null;
     }
@@ -87,111 +151,132 @@ public class ShellcheckExternalAnnotator extends ExternalAnnotator<ShellcheckAnn
             return;
         }
 
-        ShellcheckProjectComponent component = annotationResult.getInput().getComponent();
-        for (ShellcheckResult.Issue issue : annotationResult.getIssues()) {
-            HighlightSeverity severity = getHighlightSeverity(issue, component.getSettings().treatAllIssuesAsWarnings);
-            createAnnotation(holder, document, issue, severity, component);
+        long start = System.nanoTime();
+        if (annotationResult.isStale()) {
+            StaleAnnotations staleAnnotations = annotationResult.getInput().getComponent().getStaleAnnotations();
+            for (StaleAnnotations.Entry entry : staleAnnotations.get(document)) {
+                if (entry.isValid()) {
+                    createAnnotation(holder, entry.severity, entry.getRange(), entry.message, entry.afterEndOfLine);
+                }
+            }
+        } else {
+            ShellcheckProjectComponent component = annotationResult.getInput().getComponent();
+            ShellFragments.Script fragments = annotationResult.getInput().getFragments();
+            ErrorRange.ColumnIndex columnIndex = fragments != null ? new ErrorRange.ColumnIndex(fragments) : new ErrorRange.ColumnIndex(document);
+            List<StaleAnnotations.Entry> applied = batch ? null : new ArrayList<>();
+            for (ShellcheckResult.Issue issue : annotationResult.getIssues()) {
+                HighlightSeverity severity = getHighlightSeverity(issue, component.getSettings().treatAllIssuesAsWarnings);
+                createAnnotation(holder, document, columnIndex, fragments, issue, severity, component, applied);
+            }
+            if (applied != null) {
+                component.getStaleAnnotations().remember(document, applied);
+            }
+        }
+        ShellcheckMetrics.getInstance().recordApply(System.nanoTime() - start);
+    }
+
+    /**
+     * Unsaved changes of files not checked as you type wait for the editor to become idle; the previous
+     * annotations are shown until then.
+     */
+    private static boolean isDeferred(@NotNull ShellcheckAnnotationInput input) {
+        if (!FileDocumentManager.getInstance().isFileModified(input.getVirtualFile())
+                || input.getComponent().getTriggerPolicy().isOnTheFly(input.getVirtualFile())) {
+            return false;
         }
+        Document document = FileDocumentManager.getInstance().getCachedDocument(input.getVirtualFile());
+        return document != null && !ShellcheckTriggerPolicy.isIdle(document);
+    }
+
+    /**
+     * The run a pass showing stale annotations left pending completed. Highlighting starts again only while it is
+     * still the pending run of the document, the document did not change since, and the result was cached, so the
+     * next pass finds it instead of starting another run; failures are reported here since no pass will see them.
+     */
+    private static void pendingResultArrived(@NotNull ShellcheckAnnotationInput input, @NotNull Document document, long modificationStamp,
+                                             @NotNull CompletableFuture<ShellcheckResult> future, @NotNull ShellcheckResult result) {
+        ShellcheckProjectComponent component = input.getComponent();
+        if (!component.getStaleAnnotations().clearPending(document, future) || result.isUnavailable()) {
+            return;
+        }
+        if (StringUtils.isNotEmpty(result.getErrorOutput())) {
+            component.reportFailure(result.getErrorOutput());
+            return;
+        }
+        restartHighlighting(input.getPsiFile(), document, modificationStamp);
+    }
+
+    private static void restartHighlighting(@NotNull PsiFile file, @NotNull Document document, long modificationStamp) {
+        Project project = file.getProject();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (file.isValid() && document.getModificationStamp() == modificationStamp) {
+                DaemonCodeAnalyzer.getInstance(project).restart(file);
+            }
+        }, project.getDisposed());
     }
 
     private static HighlightSeverity getHighlightSeverity(ShellcheckResult.Issue issue, boolean treatAsWarnings) {
-        switch (issue.level) {
-            case "error":
-                return treatAsWarnings ? HighlightSeverity.WARNING : HighlightSeverity.ERROR;
-            case "warning":
+        switch (ShellcheckSeverity.of(issue, treatAsWarnings)) {
+            case ERROR:
+                return HighlightSeverity.ERROR;
+            case WARNING:
                 return HighlightSeverity.WARNING;
-            case "info":
-                return HighlightSeverity.INFORMATION;
             default:
                 return HighlightSeverity.INFORMATION;
         }
     }
 
     @Nullable
-    private Annotation createAnnotation(@NotNull AnnotationHolder holder, @NotNull Document document, @NotNull ShellcheckResult.Issue issue,
+    private Annotation createAnnotation(@NotNull AnnotationHolder holder, @NotNull Document document, @NotNull ErrorRange.ColumnIndex columnIndex,
+                                        @Nullable ShellFragments.Script fragments,
+                                        @NotNull ShellcheckResult.Issue issue,
                                         @NotNull HighlightSeverity severity,
-                                        ShellcheckProjectComponent component) {
+                                        ShellcheckProjectComponent component,
+                                        @Nullable List<StaleAnnotations.Entry> applied) {
         boolean showErrorOnWholeLine = component.getSettings().highlightWholeLine;
-        ErrorRange errorRange = new ErrorRange(document, issue);
+        ErrorRange errorRange = new ErrorRange(columnIndex, issue);
         if (!errorRange.isValid()) {
             return null;
         }
 
+        TextRange lineRange = errorRange.getLineRange();
+        TextRange columnRange = errorRange.getColumnRange();
+        boolean afterEndOfLine = columnRange.getStartOffset() == lineRange.getEndOffset();
+        if (fragments != null) {
+            lineRange = fragments.toHost(lineRange);
+            columnRange = fragments.toHost(columnRange);
+            if (lineRange == null || columnRange == null) {
+                return null;
+            }
+        }
+
         TextRange range;
         if (showErrorOnWholeLine) {
-            int start = DocumentUtil.getFirstNonSpaceCharOffset(document, errorRange.getLineRange().getStartOffset(), errorRange.getLineRange().getEndOffset());
-            range = new TextRange(start, errorRange.getLineRange().getEndOffset());
+            int start = DocumentUtil.getFirstNonSpaceCharOffset(document, lineRange.getStartOffset(), lineRange.getEndOffset());
+            range = new TextRange(start, lineRange.getEndOffset());
         } else {
-            range = new TextRange(errorRange.getColumnRange().getStartOffset(), errorRange.getColumnRange().getEndOffset());
+            range = columnRange;
         }
 
-        Annotation annotation = holder.createAnnotation(severity, range, "Shellcheck: " + issue.getFormattedMessage());
-        if (annotation != null) {
-            annotation.setAfterEndOfLine(errorRange.getColumnRange().getStartOffset() == errorRange.getLineRange().getEndOffset());
+        String message = "Shellcheck: " + issue.getFormattedMessage();
+        if (applied != null) {
+            applied.add(new StaleAnnotations.Entry(document, range, severity, message, afterEndOfLine));
+        }
+        Annotation annotation = createAnnotation(holder, severity, range, message, afterEndOfLine);
+        List<ShellcheckFixes.Edit> edits = annotation != null && fragments == null ? ShellcheckFixes.toEdits(columnIndex, issue) : null;
+        if (edits != null) {
+            annotation.registerFix(new ShellcheckQuickFix(issue.code, document.getModificationStamp(), edits));
         }
         return annotation;
     }
 
-    private static boolean isShellcheckFile(PsiFile file) {
-        // TODO move to settings?
-        List<String> acceptedExtensions = Arrays.asList("sh", "bash");
-        boolean isBash = file.getFileType().getName().equals("Bash");
-        String fileExtension = Optional.ofNullable(file.getVirtualFile()).map(VirtualFile::getExtension).orElse("");
-        return isBash || acceptedExtensions.contains(fileExtension);
-    }
-
-    private static class ErrorRange {
-        private boolean valid;
-        private TextRange lineRange;
-        private TextRange columnRange;
-
-        ErrorRange(Document document, ShellcheckResult.Issue issue) {
-            calculate(document, issue);
-        }
-
-        boolean isValid() {
-            return valid;
-        }
-
-        TextRange getLineRange() {
-            return lineRange;
-        }
-
-        TextRange getColumnRange() {
-            return columnRange;
-        }
-
-        private void calculate(Document document, ShellcheckResult.Issue issue) {
-            int line = issue.line - 1;
-            int endLine = issue.endLine == 0 ? line : issue.endLine - 1;
-
-            if (endLine >= 0 && endLine < document.getLineCount()) {
-                TextRange beginLineRange = TextRange.create(document.getLineStartOffset(line), document.getLineEndOffset(line));
-                int lineStartOffset = appendNormalizeColumn(document, beginLineRange, issue.column - 1).orElse(beginLineRange.getStartOffset());
-
-                int endColumn = issue.endColumn == 0 ? issue.column : issue.endColumn;
-                TextRange endLineRange = TextRange.create(document.getLineStartOffset(endLine), document.getLineEndOffset(endLine));
-                int endLineEndOffset = appendNormalizeColumn(document, endLineRange, endColumn - 1).orElse(endLineRange.getEndOffset());
-
-                lineRange = TextRange.create(beginLineRange.getStartOffset(), endLineRange.getEndOffset());
-                columnRange = TextRange.create(lineStartOffset, endLineEndOffset);
-                valid = true;
-            }
-        }
-
-        private OptionalInt appendNormalizeColumn(@NotNull Document document, TextRange lineRange, int column) {
-            CharSequence text = document.getImmutableCharSequence();
-            int col = 0;
-            for (int i = lineRange.getStartOffset(); i < lineRange.getEndOffset(); i++) {
-                char c = text.charAt(i);
-                col += (c == '\t' ? 8 : 1);
-                if (col > column) {
-                    return OptionalInt.of(i);
-                }
-            }
-            return OptionalInt.empty();
+    @Nullable
+    private static Annotation createAnnotation(@NotNull AnnotationHolder holder, @NotNull HighlightSeverity severity, @NotNull TextRange range,
+                                               @NotNull String message, boolean afterEndOfLine) {
+        Annotation annotation = holder.createAnnotation(severity, range, message);
+        if (annotation != null) {
+            annotation.setAfterEndOfLine(afterEndOfLine);
         }
+        return annotation;
     }
 }
-
-
@@ -0,0 +1,112 @@
+package com.shellcheck;
+
+import com.intellij.openapi.editor.Document;
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Turns the json1 fixes of issues into document edits. A fix is applied as a whole or not at all; the fixes of
+ * a file are merged in issue order, skipping fixes with an edit overlapping an edit taken before, so applying
+ * the merged edits is safe and the skipped fixes are found again by the next check.
+ */
+final class ShellcheckFixes {
+    /**
+     * Order of edits at the same offset, applied from the end: replacements, then insertions before the start of
+     * a range, then insertions after the end of one, so the latter end up first in the text.
+     */
+    private static final Comparator<Edit> APPLY_ORDER = Comparator.<Edit>comparingInt(edit -> edit.start).reversed()
+            .thenComparingInt(edit -> edit.rank)
+            .thenComparing(Comparator.<Edit>comparingInt(edit -> edit.sequence).reversed());
+
+    private ShellcheckFixes() {
+    }
+
+    /**
+     * @return the edits of the fix of the issue, null when it has none or a replacement is outside of the text
+     */
+    @Nullable
+    static List<Edit> toEdits(@NotNull ErrorRange.ColumnIndex index, @NotNull ShellcheckResult.Issue issue) {
+        if (!issue.hasFix()) {
+            return null;
+        }
+        List<Edit> edits = new ArrayList<>(issue.fix.replacements.size());
+        for (ShellcheckResult.Replacement replacement : issue.fix.replacements) {
+            int start = index.offsetOf(replacement.line, replacement.column);
+            int end = index.offsetOf(replacement.endLine, replacement.endColumn);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            int rank = start < end ? 0 : "afterEnd".equals(replacement.insertionPoint) ? 2 : 1;
+            edits.add(new Edit(start, end, replacement.replacement != null ? replacement.replacement : "", rank, edits.size()));
+        }
+        return edits;
+    }
+
+    /**
+     * Merges the fixes of all issues of one text.
+     */
+    @NotNull
+    static Merged merge(@NotNull ErrorRange.ColumnIndex index, @NotNull List<ShellcheckResult.Issue> issues) {
+        Merged merged = new Merged();
+        for (ShellcheckResult.Issue issue : issues) {
+            List<Edit> edits = toEdits(index, issue);
+            if (edits == null) {
+                continue;
+            }
+            if (edits.stream().anyMatch(edit -> merged.edits.stream().anyMatch(edit::overlaps))) {
+                merged.skippedFixes++;
+                continue;
+            }
+            for (Edit edit : edits) {
+                merged.edits.add(new Edit(edit.start, edit.end, edit.text, edit.rank, merged.edits.size()));
+            }
+            merged.fixes++;
+        }
+        return merged;
+    }
+
+    /**
+     * Applies non-overlapping edits; called in a write action.
+     */
+    static void apply(@NotNull Document document, @NotNull List<Edit> edits) {
+        List<Edit> ordered = new ArrayList<>(edits);
+        ordered.sort(APPLY_ORDER);
+        for (Edit edit : ordered) {
+            document.replaceString(edit.start, edit.end, edit.text);
+        }
+    }
+
+    static class Edit {
+        final int start;
+        final int end;
+        final String text;
+        private final int rank;
+        private final int sequence;
+
+        Edit(int start, int end, @NotNull String text, int rank, int sequence) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Insertions at the same offset, or at the bounds of a replaced range, do not overlap.
+         */
+        boolean overlaps(@NotNull Edit other) {
+            return start < other.end && other.start < end;
+        }
+    }
+
+    static class Merged {
+        final List<Edit> edits = new ArrayList<>();
+        int fixes;
+        int skippedFixes;
+    }
+}
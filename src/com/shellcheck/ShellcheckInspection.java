@@ -40,13 +40,13 @@ public class ShellcheckInspection extends LocalInspectionTool implements BatchSu
 
 
     public ProblemDescriptor[] checkFile(@NotNull PsiFile file, @NotNull final InspectionManager manager, final boolean isOnTheFly) {
-        return ExternalAnnotatorInspectionVisitor.checkFileWithExternalAnnotator(file, manager, isOnTheFly, new ShellcheckExternalAnnotator());
+        return ExternalAnnotatorInspectionVisitor.checkFileWithExternalAnnotator(file, manager, isOnTheFly, new ShellcheckExternalAnnotator(!isOnTheFly));
     }
 
     @NotNull
     @Override
     public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
-        return new ExternalAnnotatorInspectionVisitor(holder, new ShellcheckExternalAnnotator(), isOnTheFly);
+        return new ExternalAnnotatorInspectionVisitor(holder, new ShellcheckExternalAnnotator(!isOnTheFly), isOnTheFly);
     }
 
     @Override
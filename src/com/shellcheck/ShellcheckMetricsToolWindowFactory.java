@@ -0,0 +1,42 @@
+package com.shellcheck;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.shellcheck.utils.ShellcheckMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import java.awt.Font;
+
+/**
+ * Shows the {@link ShellcheckMetrics} report, refreshed while the tool window is open.
+ */
+public class ShellcheckMetricsToolWindowFactory implements ToolWindowFactory, DumbAware {
+    private static final int REFRESH_INTERVAL = 2000;
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        JTextArea report = new JTextArea();
+        report.setEditable(false);
+        report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, report.getFont().getSize()));
+        report.setText(ShellcheckMetrics.getInstance().getReport());
+
+        Timer timer = new Timer(REFRESH_INTERVAL, e -> {
+            if (toolWindow.isVisible()) {
+                report.setText(ShellcheckMetrics.getInstance().getReport());
+            }
+        });
+        timer.start();
+
+        Content content = ContentFactory.SERVICE.getInstance().createContent(new JBScrollPane(report), "", false);
+        Disposer.register(content, timer::stop);
+        toolWindow.getContentManager().addContent(content);
+    }
+}
@@ -0,0 +1,217 @@
+package com.shellcheck;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.PathUtil;
+import com.shellcheck.settings.Settings;
+import com.shellcheck.settings.ShellcheckExecutableRegistry;
+import com.shellcheck.utils.ShellcheckJson;
+import com.shellcheck.utils.ShellcheckOptions;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Resolves the filtering options of a file from, in this order, the nearest {@code .shellcheckrc}, the project
+ * options of the settings and the options of the configured directories containing the file. Shellcheck only
+ * looks for {@code .shellcheckrc} next to files it reads from disk, not for content read from stdin, so the
+ * plugin reads the rc files itself and passes {@code --norc} when the executable knows it; the rc files are
+ * watched, and the options are part of every command line and cache key.
+ */
+class ShellcheckOptionsResolver implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ShellcheckOptionsResolver.class);
+
+    private final Project project;
+    private final Settings settings;
+    private final Consumer<Set<String>> optionsChanged;
+    private final Map<String, ShellcheckOptions> rcOptions = new ConcurrentHashMap<>();
+    private final Map<String, ShellcheckOptions> parsedOptions = new ConcurrentHashMap<>();
+
+    /**
+     * @param optionsChanged called on {@code .shellcheckrc} changes, after the cached options were dropped, with the
+     *                       directories whose scripts the changed files apply to; the empty path stands for all scripts
+     */
+    ShellcheckOptionsResolver(@NotNull Project project, @NotNull Settings settings, @NotNull Consumer<Set<String>> optionsChanged) {
+        this.project = project;
+        this.settings = settings;
+        this.optionsChanged = optionsChanged;
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                filesChanged(events);
+            }
+        });
+    }
+
+    /**
+     * @return the options of a check of the file: the output format, json1 with fixes when the executable knows it,
+     * following sourced files, and the filtering options
+     */
+    @NotNull
+    List<String> getOptions(@NotNull String filePath) {
+        File directory = new File(filePath).getAbsoluteFile().getParentFile();
+        ShellcheckOptions options = directory != null ? getRcOptions(directory) : ShellcheckOptions.NONE;
+        options = options.with(parse(settings.checkOptions, "project"));
+        String relativePath = getRelativePath(filePath);
+        if (relativePath != null) {
+            for (Map.Entry<String, String> entry : settings.directoryOptions.entrySet()) {
+                String directoryPath = StringUtils.strip(FileUtil.toSystemIndependentName(entry.getKey()), "/");
+                if (directoryPath.isEmpty() || relativePath.startsWith(directoryPath + "/")) {
+                    options = options.with(parse(entry.getValue(), entry.getKey()));
+                }
+            }
+        }
+        ShellcheckExecutableRegistry.Executable executable = ShellcheckExecutableRegistry.getInstance()
+                .getKnown(settings.shellcheckExecutable, getCwd());
+        List<String> arguments = new ArrayList<>(ShellcheckJson.checkOptions(executable != null && executable.json1));
+        if (executable != null && executable.norc) {
+            arguments.add("--norc");
+        }
+        for (String argument : options.toArguments()) {
+            // older executables fail on the option rather than ignore it
+            if (executable != null && executable.extendedAnalysis || !argument.startsWith(ShellcheckOptions.EXTENDED_ANALYSIS_OPTION)) {
+                arguments.add(argument);
+            }
+        }
+        return Collections.unmodifiableList(arguments);
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    /**
+     * Options of the nearest rc file, searched up to the file system root and then in the home directory,
+     * like shellcheck does; cached per directory.
+     */
+    @NotNull
+    private ShellcheckOptions getRcOptions(@NotNull File directory) {
+        List<String> visited = new ArrayList<>();
+        ShellcheckOptions options = null;
+        for (File dir = directory; dir != null && options == null; dir = dir.getParentFile()) {
+            options = rcOptions.get(dir.getPath());
+            if (options == null) {
+                visited.add(dir.getPath());
+                options = readRc(new File(dir, ShellcheckOptions.RC_FILE));
+            }
+        }
+        if (options == null) {
+            options = readUserRc();
+        }
+        for (String dir : visited) {
+            rcOptions.put(dir, options);
+        }
+        return options;
+    }
+
+    @NotNull
+    private static ShellcheckOptions readUserRc() {
+        String configHome = System.getenv("XDG_CONFIG_HOME");
+        File home = new File(System.getProperty("user.home"));
+        File xdgRc = new File(configHome != null && !configHome.isEmpty() ? new File(configHome) : new File(home, ".config"), "shellcheckrc");
+        ShellcheckOptions options = readRc(xdgRc);
+        if (options == null) {
+            options = readRc(new File(home, ShellcheckOptions.RC_FILE));
+        }
+        return options != null ? options : ShellcheckOptions.NONE;
+    }
+
+    /**
+     * @return the options of the rc file, null when there is none
+     */
+    @Nullable
+    private static ShellcheckOptions readRc(@NotNull File rc) {
+        if (!rc.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(rc.toPath(), StandardCharsets.UTF_8)) {
+            return ShellcheckOptions.parseRc(reader, rc.getParentFile());
+        } catch (IOException e) {
+            LOG.info("Cannot read " + rc + ": " + e.getMessage());
+            return ShellcheckOptions.NONE;
+        }
+    }
+
+    /**
+     * Options of the settings are validated by the settings page; invalid hand edited ones are logged and ignored.
+     */
+    @NotNull
+    private ShellcheckOptions parse(@Nullable String options, @NotNull String owner) {
+        if (options == null || options.trim().isEmpty()) {
+            return ShellcheckOptions.NONE;
+        }
+        return parsedOptions.computeIfAbsent(options, value -> {
+            try {
+                return ShellcheckOptions.parse(value);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring shellcheck options of " + owner + ": " + e.getMessage());
+                return ShellcheckOptions.NONE;
+            }
+        });
+    }
+
+    private void filesChanged(@NotNull List<? extends VFileEvent> events) {
+        Set<String> directories = new LinkedHashSet<>();
+        for (VFileEvent event : events) {
+            if (isRcEvent(event)) {
+                directories.add(getAppliedDirectory(event.getPath()));
+            }
+        }
+        if (!directories.isEmpty()) {
+            rcOptions.clear();
+            optionsChanged.accept(directories);
+        }
+    }
+
+    /**
+     * A project rc file applies to the scripts below its directory, the user rc files to every script.
+     */
+    @NotNull
+    private static String getAppliedDirectory(@NotNull String rcPath) {
+        String directory = PathUtil.getParentPath(rcPath);
+        String home = FileUtil.toSystemIndependentName(System.getProperty("user.home"));
+        return rcPath.endsWith("/shellcheckrc") || directory.equals(home) ? "" : directory;
+    }
+
+    private static boolean isRcEvent(@NotNull VFileEvent event) {
+        if (event.getPath().endsWith("/" + ShellcheckOptions.RC_FILE) || event.getPath().endsWith("/shellcheckrc")) {
+            return true;
+        }
+        return event instanceof VFilePropertyChangeEvent
+                && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())
+                && ShellcheckOptions.RC_FILE.equals(((VFilePropertyChangeEvent) event).getOldValue());
+    }
+
+    @Nullable
+    private String getRelativePath(@NotNull String filePath) {
+        String basePath = project.getBasePath();
+        String relative = basePath != null ? FileUtil.getRelativePath(basePath, filePath, '/') : null;
+        return relative != null && !relative.startsWith("..") ? relative : null;
+    }
+
+    @NotNull
+    private String getCwd() {
+        return project.getBasePath() != null ? project.getBasePath() : ".";
+    }
+}
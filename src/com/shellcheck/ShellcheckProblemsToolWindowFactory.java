@@ -0,0 +1,162 @@
+package com.shellcheck;
+
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManager;
+import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.Alarm;
+import com.shellcheck.utils.ShellcheckResult;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lists the issues of all project scripts known to the {@link ShellcheckProjectAnalyzer}, grouped by file.
+ * The list comes from the persistent index, so it is complete right after opening the project.
+ */
+public class ShellcheckProblemsToolWindowFactory implements ToolWindowFactory, DumbAware {
+    static final String TOOL_WINDOW_ID = "Shellcheck Problems";
+    private static final int REFRESH_DELAY = 300;
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        ShellcheckProjectAnalyzer analyzer = project.getComponent(ShellcheckProjectComponent.class).getAnalyzer();
+        DefaultTreeModel model = new DefaultTreeModel(new DefaultMutableTreeNode());
+        Content content = ContentFactory.SERVICE.getInstance().createContent(new JBScrollPane(createTree(project, model)), "Project", false);
+        content.setCloseable(false);
+        toolWindow.getContentManager().addContent(content);
+
+        Alarm refreshAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, content);
+        Runnable refresh = () -> model.setRoot(buildTree(project, analyzer.getIssues()));
+        analyzer.addListener(() -> {
+            refreshAlarm.cancelAllRequests();
+            refreshAlarm.addRequest(refresh, REFRESH_DELAY);
+        }, content);
+        refresh.run();
+    }
+
+    /**
+     * Shows the issues of a scan in a tab of its own, replacing the previous results of the same scan.
+     */
+    static void showResults(@NotNull Project project, @NotNull String title, @NotNull Map<String, List<ShellcheckResult.Issue>> issues) {
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow == null) {
+            return;
+        }
+        toolWindow.activate(() -> {
+            ContentManager contentManager = toolWindow.getContentManager();
+            Content previous = contentManager.findContent(title);
+            if (previous != null) {
+                contentManager.removeContent(previous, true);
+            }
+            DefaultTreeModel model = new DefaultTreeModel(buildTree(project, new TreeMap<>(issues)));
+            Content content = ContentFactory.SERVICE.getInstance().createContent(new JBScrollPane(createTree(project, model)), title, false);
+            contentManager.addContent(content);
+            contentManager.setSelectedContent(content);
+        });
+    }
+
+    @NotNull
+    private static Tree createTree(@NotNull Project project, @NotNull DefaultTreeModel model) {
+        Tree tree = new Tree(model);
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+        tree.getEmptyText().setText("No shellcheck issues");
+        tree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    TreePath path = tree.getPathForLocation(e.getX(), e.getY());
+                    if (path != null) {
+                        navigate(project, ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject());
+                    }
+                }
+            }
+        });
+        return tree;
+    }
+
+    @NotNull
+    private static DefaultMutableTreeNode buildTree(@NotNull Project project, @NotNull Map<String, List<ShellcheckResult.Issue>> issues) {
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode();
+        String basePath = project.getBasePath();
+        issues.forEach((path, fileIssues) -> {
+            if (fileIssues.isEmpty()) {
+                return;
+            }
+            DefaultMutableTreeNode fileNode = new DefaultMutableTreeNode(new FileItem(path, basePath, fileIssues.size()));
+            for (ShellcheckResult.Issue issue : fileIssues) {
+                fileNode.add(new DefaultMutableTreeNode(new IssueItem(path, issue)));
+            }
+            root.add(fileNode);
+        });
+        return root;
+    }
+
+    private static void navigate(@NotNull Project project, Object item) {
+        String path;
+        int line = 0;
+        int column = 0;
+        if (item instanceof IssueItem) {
+            path = ((IssueItem) item).path;
+            line = Math.max(0, ((IssueItem) item).issue.line - 1);
+            column = Math.max(0, ((IssueItem) item).issue.column - 1);
+        } else if (item instanceof FileItem) {
+            path = ((FileItem) item).path;
+        } else {
+            return;
+        }
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+        if (file != null) {
+            new OpenFileDescriptor(project, file, line, column).navigate(true);
+        }
+    }
+
+    private static class FileItem {
+        private final String path;
+        private final String presentation;
+
+        FileItem(@NotNull String path, String basePath, int issueCount) {
+            this.path = path;
+            String relative = basePath != null ? FileUtil.getRelativePath(basePath, path, '/') : null;
+            this.presentation = (relative != null ? relative : path) + " (" + issueCount + ")";
+        }
+
+        @Override
+        public String toString() {
+            return presentation;
+        }
+    }
+
+    private static class IssueItem {
+        private final String path;
+        private final ShellcheckResult.Issue issue;
+
+        IssueItem(@NotNull String path, @NotNull ShellcheckResult.Issue issue) {
+            this.path = path;
+            this.issue = issue;
+        }
+
+        @Override
+        public String toString() {
+            return issue.line + ":" + issue.column + "  " + issue.level + ": " + issue.getFormattedMessage();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.shellcheck;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Alarm;
+import com.shellcheck.settings.Settings;
+import com.shellcheck.utils.ShellcheckIssueIndex;
+import com.shellcheck.utils.ShellcheckResult;
+import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckSourceGraph;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the issues of all scripts in the project content up to date in the background. Scripts are checked
+ * in waves through the batch engine at background priority, so open editors always go first; file system
+ * changes mark the touched scripts, and the scripts sourcing them, for another check. The issues are kept
+ * in a persistent {@link ShellcheckIssueIndex} feeding the Shellcheck Problems tool window. The project is
+ * walked by {@link ShellcheckScriptWalker} and all waits can be cancelled, so disposing the project stops it.
+ * The index is read by the first update rather than while the project opens, and only saved once it was read.
+ */
+class ShellcheckProjectAnalyzer implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ShellcheckProjectAnalyzer.class);
+
+    private static final int WAVE_SIZE = 256;
+    private static final int UPDATE_DELAY = 500;
+    private static final int SAVE_DELAY = 5000;
+
+    private final Project project;
+    private final Settings settings;
+    private final ShellcheckBatchEngine batchEngine;
+    private final ShellcheckSourceGraph sourceGraph;
+    private final ShellcheckIssueIndex index;
+    private final Alarm updateAlarm;
+    private final Alarm saveAlarm;
+    private final Set<VirtualFile> changedFiles = ConcurrentHashMap.newKeySet();
+    private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyPaths = ConcurrentHashMap.newKeySet();
+    private final Set<String> scripts = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rescanRequested = new AtomicBoolean();
+    private final AtomicBoolean updateQueued = new AtomicBoolean();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Object settingsLock = new Object();
+    private boolean started;
+    private String scannedExtensions;
+    private String checkedSettings;
+    private volatile ProgressIndicator updateIndicator;
+    private volatile boolean indexLoaded;
+
+    ShellcheckProjectAnalyzer(@NotNull Project project, @NotNull Settings settings, @NotNull ShellcheckBatchEngine batchEngine,
+                              @NotNull ShellcheckSourceGraph sourceGraph, @NotNull File indexFile) {
+        this.project = project;
+        this.settings = settings;
+        this.batchEngine = batchEngine;
+        this.sourceGraph = sourceGraph;
+        this.index = new ShellcheckIssueIndex(indexFile);
+        this.updateAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+        this.saveAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    }
+
+    /**
+     * Starts watching the file system and finds all scripts on the first call; later calls find the scripts again
+     * when the script extensions changed, or check the known ones again when the executable or the options did.
+     */
+    void settingsChanged() {
+        String extensions = settings.scriptExtensions;
+        String checkSettings = settings.shellcheckExecutable + "\u0000" + settings.checkOptions + "\u0000" + settings.directoryOptions;
+        synchronized (settingsLock) {
+            if (!started) {
+                started = true;
+                project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+                    @Override
+                    public void after(@NotNull List<? extends VFileEvent> events) {
+                        filesChanged(events);
+                    }
+                });
+            }
+            if (!extensions.equals(scannedExtensions)) {
+                rescanRequested.set(true);
+            } else if (!checkSettings.equals(checkedSettings)) {
+                dirtyPaths.addAll(scripts);
+            }
+            scannedExtensions = extensions;
+            checkedSettings = checkSettings;
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * The {@code .shellcheckrc} files of the directories changed; the scripts below them are checked again,
+     * all scripts for the empty directory.
+     */
+    void optionsChanged(@NotNull Set<String> directories) {
+        for (String script : scripts) {
+            for (String directory : directories) {
+                if (directory.isEmpty() || script.startsWith(directory + "/")) {
+                    dirtyPaths.add(script);
+                    break;
+                }
+            }
+        }
+        scheduleUpdate();
+    }
+
+    @NotNull
+    Map<String, List<ShellcheckResult.Issue>> getIssues() {
+        return index.getAll();
+    }
+
+    /**
+     * The listener is called on a pooled thread whenever the issues changed.
+     */
+    void addListener(@NotNull Runnable listener, @NotNull Disposable parent) {
+        listeners.add(listener);
+        Disposer.register(parent, () -> listeners.remove(listener));
+    }
+
+    @Override
+    public void dispose() {
+        ProgressIndicator indicator = updateIndicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
+        if (indexLoaded) {
+            index.save();
+        }
+    }
+
+    private void filesChanged(@NotNull List<? extends VFileEvent> events) {
+        boolean removed = false;
+        for (VFileEvent event : events) {
+            if (event instanceof VFileDeleteEvent) {
+                removed |= removeScripts(event.getPath());
+                sourceGraph.remove(event.getPath());
+                changedPaths.add(event.getPath());
+                continue;
+            }
+            if (event instanceof VFileMoveEvent) {
+                removed |= removeScripts(((VFileMoveEvent) event).getOldPath());
+            } else if (event instanceof VFilePropertyChangeEvent
+                    && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                VirtualFile parent = event.getFile().getParent();
+                if (parent != null) {
+                    removed |= removeScripts(parent.getPath() + "/" + ((VFilePropertyChangeEvent) event).getOldValue());
+                }
+            }
+            VirtualFile file = event.getFile();
+            if (file != null) {
+                changedFiles.add(file);
+                changedPaths.add(file.getPath());
+            }
+        }
+        if (removed) {
+            issuesChanged();
+        }
+        if (!changedFiles.isEmpty() || !changedPaths.isEmpty()) {
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Forgets the scripts at or below the path.
+     */
+    private boolean removeScripts(@NotNull String path) {
+        boolean removed = index.remove(path);
+        for (Iterator<String> it = scripts.iterator(); it.hasNext(); ) {
+            String script = it.next();
+            if (script.equals(path) || script.startsWith(path + "/")) {
+                it.remove();
+                removed |= index.remove(script);
+            }
+        }
+        return removed;
+    }
+
+    private void scheduleUpdate() {
+        if (updateQueued.compareAndSet(false, true) && !project.isDisposed()) {
+            updateAlarm.addRequest(this::update, UPDATE_DELAY);
+        }
+    }
+
+    /**
+     * Runs on a pooled thread and stops at the next file when the project is disposed; work left over is
+     * picked up by the next update.
+     */
+    private synchronized void update() {
+        updateQueued.set(false);
+        if (project.isDisposed()) {
+            return;
+        }
+        loadIndex();
+        if (!settings.pluginEnabled) {
+            return;
+        }
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        updateIndicator = indicator;
+        try {
+            if (project.isDisposed()) {
+                return;
+            }
+            collectDirtyPaths(indicator);
+            collectDependents();
+            checkDirtyPaths(indicator);
+        } catch (ProcessCanceledException e) {
+            LOG.debug("Shellcheck project analysis cancelled");
+        } finally {
+            updateIndicator = null;
+        }
+    }
+
+    /**
+     * Reads the issues saved by the previous session; scripts removed meanwhile are dropped by the first scan.
+     */
+    private void loadIndex() {
+        if (indexLoaded) {
+            return;
+        }
+        index.load();
+        indexLoaded = true;
+        listeners.forEach(Runnable::run);
+    }
+
+    private void checkDirtyPaths(@NotNull ProgressIndicator indicator) {
+        String cwd = project.getBasePath() != null ? project.getBasePath() : ".";
+        while (!dirtyPaths.isEmpty() && settings.pluginEnabled) {
+            indicator.checkCanceled();
+            List<String> wave = new ArrayList<>(WAVE_SIZE);
+            for (Iterator<String> it = dirtyPaths.iterator(); it.hasNext() && wave.size() < WAVE_SIZE; ) {
+                wave.add(it.next());
+                it.remove();
+            }
+            Map<String, CompletableFuture<ShellcheckResult>> futures = batchEngine.checkAll(cwd, wave);
+            boolean changed = false;
+            try {
+                for (Map.Entry<String, CompletableFuture<ShellcheckResult>> entry : futures.entrySet()) {
+                    ShellcheckResult result;
+                    try {
+                        result = ShellcheckRunner.await(entry.getValue(), indicator);
+                    } catch (ProcessCanceledException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        LOG.debug("Cannot check " + entry.getKey(), e);
+                        continue;
+                    }
+                    if (!result.isUnavailable() && StringUtils.isEmpty(result.getErrorOutput())) {
+                        changed |= index.put(entry.getKey(), result.getIssues());
+                    }
+                }
+            } catch (ProcessCanceledException e) {
+                futures.values().forEach(future -> future.cancel(false));
+                dirtyPaths.addAll(wave);
+                throw e;
+            } finally {
+                if (changed) {
+                    issuesChanged();
+                }
+            }
+        }
+    }
+
+    private void collectDirtyPaths(@NotNull ProgressIndicator indicator) {
+        String extensions = settings.scriptExtensions;
+        if (rescanRequested.getAndSet(false)) {
+            List<VirtualFile> found;
+            try {
+                found = ShellcheckScriptWalker.findProjectScripts(project, extensions, indicator);
+            } catch (ProcessCanceledException e) {
+                rescanRequested.set(true);
+                throw e;
+            }
+            Set<String> paths = new HashSet<>();
+            found.forEach(file -> paths.add(file.getPath()));
+            scripts.retainAll(paths);
+            scripts.addAll(paths);
+            if (index.retainAll(paths)) {
+                issuesChanged();
+            }
+            dirtyPaths.addAll(paths);
+        }
+        List<VirtualFile> changed = new ArrayList<>();
+        for (Iterator<VirtualFile> it = changedFiles.iterator(); it.hasNext(); ) {
+            changed.add(it.next());
+            it.remove();
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            for (VirtualFile file : ShellcheckScriptWalker.findScripts(project, changed, extensions, indicator)) {
+                scripts.add(file.getPath());
+                dirtyPaths.add(file.getPath());
+            }
+        } catch (ProcessCanceledException e) {
+            changedFiles.addAll(changed);
+            throw e;
+        }
+    }
+
+    /**
+     * Scripts sourcing a changed file are checked again too, the open ones are highlighted again right away.
+     */
+    private void collectDependents() {
+        Set<String> dependents = new HashSet<>();
+        for (Iterator<String> it = changedPaths.iterator(); it.hasNext(); ) {
+            dependents.addAll(sourceGraph.getTransitiveDependents(it.next()));
+            it.remove();
+        }
+        if (dependents.isEmpty()) {
+            return;
+        }
+        dirtyPaths.addAll(dependents);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            PsiManager psiManager = PsiManager.getInstance(project);
+            for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+                PsiFile psiFile = dependents.contains(file.getPath()) ? psiManager.findFile(file) : null;
+                if (psiFile != null) {
+                    DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+                }
+            }
+        }, project.getDisposed());
+    }
+
+    private void issuesChanged() {
+        listeners.forEach(Runnable::run);
+        if (indexLoaded && !project.isDisposed()) {
+            saveAlarm.cancelAllRequests();
+            saveAlarm.addRequest(index::save, SAVE_DELAY);
+        }
+    }
+}
@@ -1,29 +1,72 @@
 package com.shellcheck;
 
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationListener;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ProjectComponent;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.shellcheck.settings.Settings;
+import com.shellcheck.settings.ShellcheckExecutableRegistry;
 import com.shellcheck.settings.ShellcheckSettingsPage;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 public class ShellcheckProjectComponent implements ProjectComponent {
     private Project project;
     private Settings settings;
+    private ShellcheckTriggerPolicy triggerPolicy;
+    private ShellcheckOptionsResolver optionsResolver;
+    private ShellcheckChecker checker;
+    private ShellcheckBatchEngine batchEngine;
+    private ShellcheckProjectAnalyzer analyzer;
+    private final StaleAnnotations staleAnnotations = new StaleAnnotations();
     private boolean settingValidStatus;
     private int settingHashCode;
 
     private static final Logger LOG = Logger.getInstance(ShellcheckProjectComponent.class);
 
     private static final String PLUGIN_NAME = "Shellcheck";
+    private static final long FAILURE_NOTIFICATION_INTERVAL = TimeUnit.MINUTES.toMillis(1L);
+
+    private final Object failureLock = new Object();
+    private int unreportedFailures;
+    private long lastFailureNotification;
 
     public ShellcheckProjectComponent(Project project, Settings settings) {
         this.project = project;
         this.settings = settings;
+        this.triggerPolicy = new ShellcheckTriggerPolicy(project, settings);
+        this.optionsResolver = new ShellcheckOptionsResolver(project, settings, this::optionsChanged);
+        this.checker = new ShellcheckChecker(settings, getCwd(project), triggerPolicy, optionsResolver, getStorageFile(project, "results.dat"));
+        this.batchEngine = new ShellcheckBatchEngine(settings, checker);
+        this.analyzer = new ShellcheckProjectAnalyzer(project, settings, batchEngine, checker.getSourceGraph(),
+                getStorageFile(project, "index.dat"));
+        Disposer.register(project, analyzer);
+        Disposer.register(project, triggerPolicy);
+        Disposer.register(project, optionsResolver);
+        project.getMessageBus().connect(project).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerAdapter() {
+            @Override
+            public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+                Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+                if (document != null && !source.isFileOpen(file)) {
+                    staleAnnotations.release(document);
+                }
+            }
+        });
     }
 
     @Override
@@ -35,6 +78,9 @@ public class ShellcheckProjectComponent implements ProjectComponent {
 
     @Override
     public void projectClosed() {
+        staleAnnotations.releaseAll();
+        batchEngine.dispose();
+        checker.dispose();
     }
 
     @Override
@@ -46,6 +92,9 @@ public class ShellcheckProjectComponent implements ProjectComponent {
 
     @Override
     public void disposeComponent() {
+        staleAnnotations.releaseAll();
+        batchEngine.dispose();
+        checker.dispose();
     }
 
     @NotNull
@@ -54,31 +103,117 @@ public class ShellcheckProjectComponent implements ProjectComponent {
         return ShellcheckProjectComponent.class.getName();
     }
 
+    @NotNull
+    private static File getStorageFile(@NotNull Project project, @NotNull String name) {
+        return new File(PathManager.getSystemPath(), "shellcheck/" + project.getLocationHash() + "/" + name);
+    }
+
+    @NotNull
+    private static String getCwd(@NotNull Project project) {
+        return project.getBasePath() != null ? project.getBasePath() : ".";
+    }
+
     Settings getSettings() {
         return settings;
     }
 
+    ShellcheckChecker getChecker() {
+        return checker;
+    }
+
+    ShellcheckTriggerPolicy getTriggerPolicy() {
+        return triggerPolicy;
+    }
+
+    ShellcheckBatchEngine getBatchEngine() {
+        return batchEngine;
+    }
+
+    ShellcheckProjectAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    StaleAnnotations getStaleAnnotations() {
+        return staleAnnotations;
+    }
+
     boolean isEnabled() {
         return settings.pluginEnabled;
     }
 
-    boolean isSettingsValid() {
-        if (settings.hashCode() != settingHashCode) {
-            settingHashCode = settings.hashCode();
-            settingValidStatus = settings.isValid(project);
-            if (!settingValidStatus) {
-                validationFailed(ShellcheckBundle.message("shellcheck.settings.invalid"));
-            }
+    /**
+     * False until the executable registry confirmed the executable of the current settings; highlighting
+     * is restarted once it does, so neither startup nor highlighting waits for the check.
+     */
+    synchronized boolean isSettingsValid() {
+        int hashCode = settings.hashCode();
+        if (hashCode != settingHashCode) {
+            settingHashCode = hashCode;
+            settingValidStatus = false;
+            staleAnnotations.releaseAll();
+            checker.settingsChanged();
+            ShellcheckExecutableRegistry.getInstance().probe(settings.shellcheckExecutable, getCwd(project))
+                    .thenAccept(executable -> executableProbed(hashCode, executable.valid));
         }
         return settingValidStatus;
     }
 
+    private void executableProbed(int hashCode, boolean valid) {
+        synchronized (this) {
+            if (hashCode != settingHashCode) {
+                return;
+            }
+            settingValidStatus = valid;
+        }
+        if (!valid) {
+            validationFailed(ShellcheckBundle.message("shellcheck.settings.invalid"));
+        } else if (!project.isDisposed()) {
+            DaemonCodeAnalyzer.getInstance(project).restart();
+            analyzer.settingsChanged();
+        }
+    }
+
+    /**
+     * {@code .shellcheckrc} files changed: idle warm processes were started with the previous options, and the
+     * scripts below the directories have to be checked again.
+     */
+    private void optionsChanged(@NotNull Set<String> directories) {
+        checker.invalidateWarmProcesses();
+        boolean valid;
+        synchronized (this) {
+            valid = settingValidStatus;
+        }
+        if (isEnabled() && valid && !project.isDisposed()) {
+            DaemonCodeAnalyzer.getInstance(project).restart();
+            analyzer.optionsChanged(directories);
+        }
+    }
+
     private void validationFailed(String msg) {
         NotificationListener notificationListener = (notification, event) -> new ShellcheckSettingsPage(project, settings).showSettings();
         String errorMessage = msg + ShellcheckBundle.message("shellcheck.settings.fix");
         showInfoNotification(errorMessage, NotificationType.WARNING, notificationListener);
         LOG.debug(msg);
-        settingValidStatus = false;
+    }
+
+    /**
+     * Notifies about a failed run at most once per {@link #FAILURE_NOTIFICATION_INTERVAL}; failures in between
+     * are counted into the next notification.
+     */
+    void reportFailure(String message) {
+        int failures;
+        synchronized (failureLock) {
+            unreportedFailures++;
+            long now = System.currentTimeMillis();
+            if (now - lastFailureNotification < FAILURE_NOTIFICATION_INTERVAL) {
+                return;
+            }
+            lastFailureNotification = now;
+            failures = unreportedFailures;
+            unreportedFailures = 0;
+        }
+        String content = failures == 1 ? message : ShellcheckBundle.message("shellcheck.failures", failures, message);
+        showInfoNotification(content, NotificationType.WARNING);
     }
 
     void showInfoNotification(String content, NotificationType type) {
@@ -0,0 +1,67 @@
+package com.shellcheck;
+
+import com.intellij.codeInsight.intention.IntentionAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Applies the fix shellcheck reported for one issue. The edits are computed for the checked text, so the fix is
+ * only available until the document changes; the next check offers it again.
+ */
+class ShellcheckQuickFix implements IntentionAction {
+    private final String code;
+    private final long modificationStamp;
+    private final List<ShellcheckFixes.Edit> edits;
+
+    ShellcheckQuickFix(@Nullable String code, long modificationStamp, @NotNull List<ShellcheckFixes.Edit> edits) {
+        this.code = code;
+        this.modificationStamp = modificationStamp;
+        this.edits = edits;
+    }
+
+    @Nls
+    @NotNull
+    @Override
+    public String getText() {
+        return ShellcheckBundle.message("shellcheck.fix.issue", code != null ? code : "");
+    }
+
+    @Nls
+    @NotNull
+    @Override
+    public String getFamilyName() {
+        return ShellcheckBundle.message("shellcheck.fix.family");
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project, Editor editor, PsiFile file) {
+        Document document = getDocument(project, file);
+        return document != null && document.getModificationStamp() == modificationStamp;
+    }
+
+    @Override
+    public void invoke(@NotNull Project project, Editor editor, PsiFile file) {
+        Document document = getDocument(project, file);
+        if (document != null && document.getModificationStamp() == modificationStamp) {
+            ShellcheckFixes.apply(document, edits);
+        }
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return true;
+    }
+
+    @Nullable
+    private static Document getDocument(@NotNull Project project, @Nullable PsiFile file) {
+        return file != null && file.isValid() ? PsiDocumentManager.getInstance(project).getDocument(file) : null;
+    }
+}
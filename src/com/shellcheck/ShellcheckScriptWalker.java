@@ -0,0 +1,112 @@
+package com.shellcheck;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.EmptyRunnable;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the shell scripts of the project content in short read actions of at most {@link #CHUNK_SIZE} files,
+ * which give way to write actions and stop when the indicator is cancelled, so walking a large project neither
+ * freezes the UI nor holds off typing. Files are classified outside the read actions, since that may read the
+ * start of a file from disk.
+ */
+final class ShellcheckScriptWalker {
+    private static final int CHUNK_SIZE = 256;
+
+    private ShellcheckScriptWalker() {
+    }
+
+    @NotNull
+    static List<VirtualFile> findProjectScripts(@NotNull Project project, @NotNull String extensions, @NotNull ProgressIndicator indicator) {
+        List<VirtualFile> roots = new ArrayList<>();
+        runReadAction(() -> {
+            roots.clear();
+            Collections.addAll(roots, ProjectRootManager.getInstance(project).getContentRoots());
+        }, indicator);
+        return findScripts(project, roots, extensions, indicator);
+    }
+
+    /**
+     * Shell scripts among the files and below the directories, as far as they are in the project content.
+     */
+    @NotNull
+    static List<VirtualFile> findScripts(@NotNull Project project, @NotNull Collection<VirtualFile> roots, @NotNull String extensions,
+                                         @NotNull ProgressIndicator indicator) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Set<VirtualFile> visited = new HashSet<>(roots);
+        Deque<VirtualFile> queue = new ArrayDeque<>(visited);
+        List<VirtualFile> candidates = new ArrayList<>();
+        List<VirtualFile> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<VirtualFile> children = new ArrayList<>();
+        List<VirtualFile> files = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            chunk.clear();
+            while (!queue.isEmpty() && chunk.size() < CHUNK_SIZE) {
+                chunk.add(queue.poll());
+            }
+            runReadAction(() -> {
+                children.clear();
+                files.clear();
+                for (VirtualFile file : chunk) {
+                    if (!file.isValid() || !fileIndex.isInContent(file)) {
+                        continue;
+                    }
+                    if (file.isDirectory()) {
+                        Collections.addAll(children, file.getChildren());
+                    } else {
+                        files.add(file);
+                    }
+                }
+            }, indicator);
+            for (VirtualFile child : children) {
+                if (visited.add(child)) {
+                    queue.add(child);
+                }
+            }
+            candidates.addAll(files);
+        }
+
+        List<VirtualFile> scripts = new ArrayList<>();
+        for (VirtualFile file : candidates) {
+            indicator.checkCanceled();
+            if (file.isInLocalFileSystem() && ShellScriptClassifier.isShellScript(file, extensions)) {
+                scripts.add(file);
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * Runs the read action, again after every write action interrupting it, until it completes or the indicator
+     * is cancelled; the action has to start over from scratch when run again.
+     */
+    static void runReadAction(@NotNull Runnable action, @NotNull ProgressIndicator indicator) {
+        if (ApplicationManager.getApplication().isDispatchThread()) {
+            ApplicationManager.getApplication().runReadAction(action);
+            return;
+        }
+        while (true) {
+            indicator.checkCanceled();
+            if (ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(action)) {
+                return;
+            }
+            ApplicationManager.getApplication().invokeAndWait(EmptyRunnable.getInstance(), ModalityState.any());
+        }
+    }
+}
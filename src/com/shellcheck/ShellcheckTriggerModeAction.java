@@ -0,0 +1,51 @@
+package com.shellcheck;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Overrides per file whether the current script is checked as you type or only on save and when idle.
+ */
+public class ShellcheckTriggerModeAction extends ToggleAction implements DumbAware {
+
+    @Override
+    public void update(AnActionEvent e) {
+        super.update(e);
+        e.getPresentation().setEnabledAndVisible(getPolicy(e) != null);
+    }
+
+    @Override
+    public boolean isSelected(AnActionEvent e) {
+        ShellcheckTriggerPolicy policy = getPolicy(e);
+        VirtualFile file = e.getData(CommonDataKeys.VIRTUAL_FILE);
+        return policy != null && file != null && policy.isOnTheFly(file);
+    }
+
+    @Override
+    public void setSelected(AnActionEvent e, boolean state) {
+        ShellcheckTriggerPolicy policy = getPolicy(e);
+        VirtualFile file = e.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (policy != null && file != null) {
+            policy.setOverride(file, state ? ShellcheckTriggerPolicy.Mode.ON_THE_FLY : ShellcheckTriggerPolicy.Mode.ON_SAVE_OR_IDLE);
+        }
+    }
+
+    @Nullable
+    private static ShellcheckTriggerPolicy getPolicy(AnActionEvent e) {
+        Project project = e.getProject();
+        VirtualFile file = e.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (project == null || file == null) {
+            return null;
+        }
+        ShellcheckProjectComponent component = project.getComponent(ShellcheckProjectComponent.class);
+        if (!component.isEnabled() || !ShellScriptClassifier.isShellScript(file, component.getSettings().scriptExtensions)) {
+            return null;
+        }
+        return component.getTriggerPolicy();
+    }
+}
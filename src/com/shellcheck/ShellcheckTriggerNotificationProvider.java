@@ -0,0 +1,60 @@
+package com.shellcheck;
+
+import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.EditorNotificationPanel;
+import com.intellij.ui.EditorNotifications;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tells when a script is not checked as you type, and why, with links to override the decision.
+ */
+public class ShellcheckTriggerNotificationProvider extends EditorNotifications.Provider<EditorNotificationPanel> implements DumbAware {
+    private static final Key<EditorNotificationPanel> KEY = Key.create("shellcheck.trigger.mode");
+
+    private final Project project;
+
+    public ShellcheckTriggerNotificationProvider(Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    @Override
+    public Key<EditorNotificationPanel> getKey() {
+        return KEY;
+    }
+
+    @Nullable
+    @Override
+    public EditorNotificationPanel createNotificationPanel(@NotNull VirtualFile file, @NotNull FileEditor fileEditor) {
+        ShellcheckProjectComponent component = project.getComponent(ShellcheckProjectComponent.class);
+        if (!component.isEnabled() || !ShellScriptClassifier.isShellScript(file, component.getSettings().scriptExtensions)) {
+            return null;
+        }
+        ShellcheckTriggerPolicy policy = component.getTriggerPolicy();
+        if (policy.isOnTheFly(file)) {
+            return null;
+        }
+        ShellcheckTriggerPolicy.Mode override = policy.getOverride(file);
+        EditorNotificationPanel panel = new EditorNotificationPanel();
+        if (override != ShellcheckTriggerPolicy.Mode.AUTOMATIC) {
+            panel.setText(ShellcheckBundle.message("shellcheck.trigger.deferred.override"));
+        } else if (policy.isSlow(file.getPath())) {
+            panel.setText(ShellcheckBundle.message("shellcheck.trigger.deferred.slow", policy.getAverageMillis(file.getPath()),
+                    component.getSettings().slowFileBudgetMillis));
+        } else {
+            panel.setText(ShellcheckBundle.message("shellcheck.trigger.deferred.large", component.getSettings().largeFileLines));
+        }
+        panel.createActionLabel(ShellcheckBundle.message("shellcheck.trigger.on.the.fly"),
+                () -> policy.setOverride(file, ShellcheckTriggerPolicy.Mode.ON_THE_FLY));
+        if (override != ShellcheckTriggerPolicy.Mode.AUTOMATIC) {
+            panel.createActionLabel(ShellcheckBundle.message("shellcheck.trigger.automatic"),
+                    () -> policy.setOverride(file, ShellcheckTriggerPolicy.Mode.AUTOMATIC));
+        }
+        return panel;
+    }
+}
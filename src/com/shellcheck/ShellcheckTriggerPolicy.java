@@ -0,0 +1,196 @@
+package com.shellcheck;
+
+import com.intellij.AppTopics;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileDocumentManagerAdapter;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.ui.EditorNotifications;
+import com.intellij.util.Alarm;
+import com.shellcheck.settings.Settings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides per file whether it is checked as you type. Files whose average run takes longer than
+ * {@link Settings#slowFileBudgetMillis}, or with more than {@link Settings#largeFileLines} lines, are only
+ * checked once saved or after the editor was idle for a while; the previous annotations stay in the
+ * meantime. Users can override the decision per file, the overrides are kept in {@link Settings#triggerModes}.
+ */
+class ShellcheckTriggerPolicy implements Disposable {
+    private static final double SMOOTHING = 0.3;
+    private static final int IDLE_DELAY = 2000;
+    private static final Key<Long> IDLE_STAMP = Key.create("shellcheck.idle.stamp");
+    private static final Key<Runnable> IDLE_REQUEST = Key.create("shellcheck.idle.request");
+
+    enum Mode {
+        AUTOMATIC, ON_THE_FLY, ON_SAVE_OR_IDLE
+    }
+
+    private final Project project;
+    private final Settings settings;
+    private final Map<String, Double> averageMillis = new ConcurrentHashMap<>();
+    private final Alarm idleAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+
+    ShellcheckTriggerPolicy(@NotNull Project project, @NotNull Settings settings) {
+        this.project = project;
+        this.settings = settings;
+        project.getMessageBus().connect(this).subscribe(AppTopics.FILE_DOCUMENT_SYNC, new FileDocumentManagerAdapter() {
+            @Override
+            public void beforeDocumentSaving(@NotNull Document document) {
+                documentSaving(document);
+            }
+        });
+    }
+
+    /**
+     * Updates the moving average run time of the file; the editor banner is refreshed when the file
+     * crosses the budget.
+     */
+    void recordRun(@NotNull String filePath, long runNanos) {
+        double millis = TimeUnit.NANOSECONDS.toMillis(runNanos);
+        Double previous = averageMillis.get(filePath);
+        double average = averageMillis.merge(filePath, millis, (old, value) -> old + SMOOTHING * (value - old));
+        int budget = settings.slowFileBudgetMillis;
+        if ((previous != null && previous > budget) != (average > budget)) {
+            updateNotifications(filePath);
+        }
+    }
+
+    /**
+     * @return the moving average run time of the file in milliseconds, or -1 when it was not run yet
+     */
+    long getAverageMillis(@NotNull String filePath) {
+        Double average = averageMillis.get(filePath);
+        return average != null ? Math.round(average) : -1;
+    }
+
+    @NotNull
+    Mode getOverride(@NotNull VirtualFile file) {
+        String mode = settings.triggerModes.get(settingsKey(file));
+        if (mode != null) {
+            try {
+                return Mode.valueOf(mode);
+            } catch (IllegalArgumentException ignored) {
+                // unknown value from another version of the plugin
+            }
+        }
+        return Mode.AUTOMATIC;
+    }
+
+    void setOverride(@NotNull VirtualFile file, @NotNull Mode mode) {
+        Map<String, String> triggerModes = new TreeMap<>(settings.triggerModes);
+        if (mode == Mode.AUTOMATIC) {
+            triggerModes.remove(settingsKey(file));
+        } else {
+            triggerModes.put(settingsKey(file), mode.name());
+        }
+        settings.triggerModes = triggerModes;
+        EditorNotifications.getInstance(project).updateNotifications(file);
+        restart(file);
+    }
+
+    boolean isOnTheFly(@NotNull VirtualFile file) {
+        Mode override = getOverride(file);
+        if (override != Mode.AUTOMATIC) {
+            return override == Mode.ON_THE_FLY;
+        }
+        return !isSlow(file.getPath()) && !isLarge(FileDocumentManager.getInstance().getCachedDocument(file));
+    }
+
+    boolean isSlow(@NotNull String filePath) {
+        Double average = averageMillis.get(filePath);
+        return average != null && average > settings.slowFileBudgetMillis;
+    }
+
+    boolean isLarge(@Nullable Document document) {
+        return document != null && settings.largeFileLines > 0 && document.getLineCount() > settings.largeFileLines;
+    }
+
+    /**
+     * Whether the editor was idle since the last change of the document, see {@link #checkWhenIdle(PsiFile)}.
+     */
+    static boolean isIdle(@NotNull Document document) {
+        Long stamp = document.getUserData(IDLE_STAMP);
+        return stamp != null && stamp == document.getModificationStamp();
+    }
+
+    /**
+     * Highlights the file again once its document did not change for {@link #IDLE_DELAY}; called on every
+     * deferred highlighting pass, so each change restarts the delay.
+     */
+    void checkWhenIdle(@NotNull PsiFile file) {
+        Document document = PsiDocumentManager.getInstance(project).getDocument(file);
+        if (document == null) {
+            return;
+        }
+        long stamp = document.getModificationStamp();
+        Runnable request = () -> {
+            if (file.isValid() && document.getModificationStamp() == stamp) {
+                document.putUserData(IDLE_STAMP, stamp);
+                DaemonCodeAnalyzer.getInstance(project).restart(file);
+            }
+        };
+        ApplicationManager.getApplication().invokeLater(() -> {
+            Runnable previous = document.getUserData(IDLE_REQUEST);
+            if (previous != null) {
+                idleAlarm.cancelRequest(previous);
+            }
+            document.putUserData(IDLE_REQUEST, request);
+            idleAlarm.addRequest(request, IDLE_DELAY);
+        }, project.getDisposed());
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    /**
+     * Deferred files are highlighted again once saved; the restart runs after the document was written.
+     */
+    private void documentSaving(@NotNull Document document) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (file != null && settings.pluginEnabled && !isOnTheFly(file)) {
+            ApplicationManager.getApplication().invokeLater(() -> restart(file), project.getDisposed());
+        }
+    }
+
+    private void restart(@NotNull VirtualFile file) {
+        PsiFile psiFile = file.isValid() && !project.isDisposed() ? PsiManager.getInstance(project).findFile(file) : null;
+        if (psiFile != null) {
+            DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+        }
+    }
+
+    private void updateNotifications(@NotNull String filePath) {
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+        if (file != null && !project.isDisposed()) {
+            EditorNotifications.getInstance(project).updateNotifications(file);
+        }
+    }
+
+    /**
+     * Overrides are stored relative to the project, so the settings can be shared.
+     */
+    @NotNull
+    private String settingsKey(@NotNull VirtualFile file) {
+        String basePath = project.getBasePath();
+        String relative = basePath != null ? FileUtil.getRelativePath(basePath, file.getPath(), '/') : null;
+        return relative != null && !relative.startsWith("..") ? relative : file.getPath();
+    }
+}
@@ -0,0 +1,126 @@
+package com.shellcheck;
+
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The annotations last applied to the documents of a project, anchored to range markers so they follow later edits.
+ * They are shown again while the run for the edited text is still pending; each document has at most one such run.
+ * The markers are disposed when the file is closed and when the settings change.
+ */
+class StaleAnnotations {
+    private static final Key<List<Entry>> ANNOTATIONS = Key.create("shellcheck.stale.annotations");
+    private static final Key<CompletableFuture<?>> PENDING = Key.create("shellcheck.stale.pending");
+
+    private final Set<Document> documents = ContainerUtil.createWeakSet();
+
+    synchronized boolean isPresent(@NotNull Document document) {
+        return document.getUserData(ANNOTATIONS) != null;
+    }
+
+    @NotNull
+    synchronized List<Entry> get(@NotNull Document document) {
+        List<Entry> entries = document.getUserData(ANNOTATIONS);
+        return entries != null ? entries : Collections.emptyList();
+    }
+
+    /**
+     * Replaces the remembered annotations; called from the highlighting pass applying a fresh result.
+     */
+    synchronized void remember(@NotNull Document document, @NotNull List<Entry> entries) {
+        disposeMarkers(document);
+        if (entries.isEmpty()) {
+            document.putUserData(ANNOTATIONS, null);
+        } else {
+            document.putUserData(ANNOTATIONS, Collections.unmodifiableList(new ArrayList<>(entries)));
+            documents.add(document);
+        }
+    }
+
+    /**
+     * Makes the run the one the stale annotations of the document wait for; the previous one is cancelled.
+     */
+    synchronized void setPending(@NotNull Document document, @NotNull CompletableFuture<?> future) {
+        CompletableFuture<?> previous = document.getUserData(PENDING);
+        document.putUserData(PENDING, future);
+        documents.add(document);
+        if (previous != null && previous != future) {
+            previous.cancel(false);
+        }
+    }
+
+    /**
+     * @return whether the run was still the pending one of the document, rather than replaced or released
+     */
+    synchronized boolean clearPending(@NotNull Document document, @NotNull CompletableFuture<?> future) {
+        if (document.getUserData(PENDING) != future) {
+            return false;
+        }
+        document.putUserData(PENDING, null);
+        return true;
+    }
+
+    /**
+     * Disposes the markers of the document and cancels its pending run.
+     */
+    synchronized void release(@NotNull Document document) {
+        disposeMarkers(document);
+        document.putUserData(ANNOTATIONS, null);
+        CompletableFuture<?> pending = document.getUserData(PENDING);
+        document.putUserData(PENDING, null);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        documents.remove(document);
+    }
+
+    synchronized void releaseAll() {
+        for (Document document : new ArrayList<>(documents)) {
+            release(document);
+        }
+    }
+
+    private static void disposeMarkers(@NotNull Document document) {
+        List<Entry> entries = document.getUserData(ANNOTATIONS);
+        if (entries != null) {
+            for (Entry previous : entries) {
+                previous.marker.dispose();
+            }
+        }
+    }
+
+    static class Entry {
+        final RangeMarker marker;
+        final HighlightSeverity severity;
+        final String message;
+        final boolean afterEndOfLine;
+
+        Entry(@NotNull Document document, @NotNull TextRange range, @NotNull HighlightSeverity severity, @NotNull String message,
+              boolean afterEndOfLine) {
+            this.marker = document.createRangeMarker(range);
+            this.severity = severity;
+            this.message = message;
+            this.afterEndOfLine = afterEndOfLine;
+        }
+
+        boolean isValid() {
+            return marker.isValid() && (afterEndOfLine || marker.getStartOffset() < marker.getEndOffset());
+        }
+
+        @NotNull
+        TextRange getRange() {
+            return TextRange.create(marker.getStartOffset(), marker.getEndOffset());
+        }
+    }
+}
@@ -4,11 +4,12 @@ import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
-import com.intellij.openapi.project.Project;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
 @State(name = "ShellcheckProjectComponent", storages = {@Storage("shellcheckPlugin.xml") })
 public class Settings implements PersistentStateComponent<Settings> {
@@ -16,6 +17,29 @@ public class Settings implements PersistentStateComponent<Settings> {
     public boolean treatAllIssuesAsWarnings;
     public boolean highlightWholeLine;
     public boolean pluginEnabled;
+    public String scriptExtensions = "sh,bash";
+    public int resultCacheSize = 256;
+    public int slowFileBudgetMillis = 1500;
+    public int largeFileLines = 5000;
+    public boolean checkShellFragments = true;
+    /**
+     * Shellcheck filtering options of the project, e.g. {@code --severity=warning --exclude=SC2034}, and of
+     * directories, by project relative path; see {@link com.shellcheck.utils.ShellcheckOptions#parse(String)}.
+     */
+    public String checkOptions = "";
+    public Map<String, String> directoryOptions = new TreeMap<>();
+    /**
+     * Per file overrides of the trigger mode, by project relative path; not part of {@link #equals(Object)},
+     * changing them does not require validating the settings again. Read by highlighting threads, so the map is
+     * replaced by a changed copy rather than modified.
+     */
+    public volatile Map<String, String> triggerModes = new TreeMap<>();
+    /**
+     * Commit dialog and scan choices; like the overrides above they are not part of {@link #equals(Object)}. The
+     * commit check is opt in, from the commit dialog.
+     */
+    public boolean checkBeforeCommit = false;
+    public String baseBranch = "master";
 
     @Nullable
     @Override
@@ -28,11 +52,6 @@ public class Settings implements PersistentStateComponent<Settings> {
         XmlSerializerUtil.copyBean(state, this);
     }
 
-
-    public boolean isValid(Project project) {
-        return ShellcheckFinder.validatePath(project, shellcheckExecutable);
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -41,11 +60,20 @@ public class Settings implements PersistentStateComponent<Settings> {
         return treatAllIssuesAsWarnings == settings.treatAllIssuesAsWarnings &&
                 highlightWholeLine == settings.highlightWholeLine &&
                 pluginEnabled == settings.pluginEnabled &&
-                Objects.equals(shellcheckExecutable, settings.shellcheckExecutable);
+                resultCacheSize == settings.resultCacheSize &&
+                slowFileBudgetMillis == settings.slowFileBudgetMillis &&
+                largeFileLines == settings.largeFileLines &&
+                checkShellFragments == settings.checkShellFragments &&
+                Objects.equals(shellcheckExecutable, settings.shellcheckExecutable) &&
+                Objects.equals(scriptExtensions, settings.scriptExtensions) &&
+                Objects.equals(checkOptions, settings.checkOptions) &&
+                Objects.equals(directoryOptions, settings.directoryOptions);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(shellcheckExecutable, treatAllIssuesAsWarnings, highlightWholeLine, pluginEnabled);
+        return Objects.hash(shellcheckExecutable, treatAllIssuesAsWarnings, highlightWholeLine, pluginEnabled, resultCacheSize,
+                scriptExtensions, slowFileBudgetMillis, largeFileLines, checkShellFragments,
+                checkOptions, directoryOptions);
     }
 }
@@ -0,0 +1,46 @@
+package com.shellcheck.settings;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.shellcheck.utils.ShellcheckScheduler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Settings of resources shared by all open projects, which a project setting could only configure for the
+ * project changed last.
+ */
+@State(name = "ShellcheckApplicationSettings", storages = {@Storage("shellcheck.xml")})
+public class ShellcheckApplicationSettings implements PersistentStateComponent<ShellcheckApplicationSettings> {
+    /**
+     * Maximum number of shellcheck runs at the same time across all projects, the number of cores when not positive.
+     */
+    public int maxConcurrentProcesses;
+
+    @NotNull
+    public static ShellcheckApplicationSettings getInstance() {
+        return ServiceManager.getService(ShellcheckApplicationSettings.class);
+    }
+
+    @Nullable
+    @Override
+    public ShellcheckApplicationSettings getState() {
+        return this;
+    }
+
+    @Override
+    public void loadState(ShellcheckApplicationSettings state) {
+        XmlSerializerUtil.copyBean(state, this);
+        apply();
+    }
+
+    /**
+     * Configures the {@link ShellcheckScheduler}.
+     */
+    public void apply() {
+        ShellcheckScheduler.getInstance().setMaxConcurrency(maxConcurrentProcesses);
+    }
+}
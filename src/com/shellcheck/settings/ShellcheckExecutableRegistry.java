@@ -0,0 +1,147 @@
+package com.shellcheck.settings;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.shellcheck.utils.ShellcheckOptions;
+import com.shellcheck.utils.ShellcheckResultCache;
+import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.SingleFlight;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application wide knowledge about shellcheck executables. Each binary, identified by path, size and
+ * modification time, is probed for its version and capabilities once, on a pooled thread, and the outcome
+ * is remembered between sessions, so neither project opening nor the settings page waits for a fork.
+ */
+@State(name = "ShellcheckExecutables", storages = {@Storage("shellcheckExecutables.xml")})
+public class ShellcheckExecutableRegistry implements PersistentStateComponent<ShellcheckExecutableRegistry.RegistryState> {
+    private static final Logger LOG = Logger.getInstance(ShellcheckExecutableRegistry.class);
+    /**
+     * Revision of the probed capabilities; executables remembered with an older one are probed again.
+     */
+    private static final int PROBE_REVISION = 3;
+
+    private final Map<String, Executable> executables = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Executable> probes = new SingleFlight<>();
+
+    @NotNull
+    public static ShellcheckExecutableRegistry getInstance() {
+        return ServiceManager.getService(ShellcheckExecutableRegistry.class);
+    }
+
+    /**
+     * Completes with what is known about the executable; relative paths are resolved against the working directory.
+     * Never blocks the caller, the file system check and a probe of an unknown binary run on a pooled thread.
+     */
+    @NotNull
+    public CompletableFuture<Executable> probe(@NotNull String shellcheckExe, @NotNull String cwd) {
+        return probes.run(shellcheckExe + "\u0000" + cwd, () -> {
+            CompletableFuture<Executable> future = new CompletableFuture<>();
+            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                try {
+                    future.complete(lookup(shellcheckExe, cwd));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            return future;
+        });
+    }
+
+    /**
+     * What is known about the executable without probing it, null before the first probe completed.
+     */
+    @Nullable
+    public Executable getKnown(@NotNull String shellcheckExe, @NotNull String cwd) {
+        return executables.get(ShellcheckResultCache.executableStamp(shellcheckExe, cwd));
+    }
+
+    @NotNull
+    private Executable lookup(@NotNull String shellcheckExe, @NotNull String cwd) {
+        File file = new File(shellcheckExe);
+        if (!file.isAbsolute()) {
+            file = new File(cwd, shellcheckExe);
+        }
+        if (shellcheckExe.isEmpty() || !file.isFile()) {
+            return Executable.invalid(file.getAbsolutePath());
+        }
+        String stamp = ShellcheckResultCache.executableStamp(shellcheckExe, cwd);
+        Executable known = executables.get(stamp);
+        if (known != null) {
+            return known;
+        }
+        Executable executable = new Executable();
+        executable.stamp = stamp;
+        executable.path = file.getAbsolutePath();
+        executable.valid = true;
+        try {
+            executable.version = ShellcheckRunner.runVersion(executable.path, cwd);
+            executable.json1 = ShellcheckRunner.supportsFormat(executable.path, cwd, "json1");
+            executable.norc = ShellcheckRunner.supportsOption(executable.path, cwd, "--norc");
+            executable.extendedAnalysis = ShellcheckRunner.supportsOption(executable.path, cwd, ShellcheckOptions.EXTENDED_ANALYSIS_OPTION + "=true");
+            executable.probeRevision = PROBE_REVISION;
+        } catch (ExecutionException e) {
+            // not remembered, the next probe tries again
+            LOG.debug("Cannot probe " + executable.path, e);
+            executable.version = "error";
+            return executable;
+        }
+        executables.values().removeIf(other -> other.path.equals(executable.path));
+        executables.put(stamp, executable);
+        return executable;
+    }
+
+    @NotNull
+    @Override
+    public RegistryState getState() {
+        RegistryState state = new RegistryState();
+        state.executables = new ArrayList<>(executables.values());
+        return state;
+    }
+
+    @Override
+    public void loadState(RegistryState state) {
+        executables.clear();
+        for (Executable executable : state.executables) {
+            if (executable.stamp != null && executable.path != null && executable.probeRevision == PROBE_REVISION) {
+                executables.put(executable.stamp, executable);
+            }
+        }
+    }
+
+    public static class RegistryState {
+        public List<Executable> executables = new ArrayList<>();
+    }
+
+    public static class Executable {
+        public String stamp;
+        public String path;
+        public String version = "";
+        public boolean valid;
+        public boolean json1;
+        public boolean norc;
+        public boolean extendedAnalysis;
+        public int probeRevision;
+
+        @NotNull
+        static Executable invalid(@NotNull String path) {
+            Executable executable = new Executable();
+            executable.path = path;
+            executable.version = "n.a.";
+            return executable;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.shellcheck.settings;
 
-import com.intellij.execution.ExecutionException;
 import com.intellij.ide.actions.ShowSettingsUtilImpl;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
@@ -14,7 +13,7 @@ import com.intellij.ui.TextFieldWithHistoryWithBrowseButton;
 import com.intellij.util.ui.SwingHelper;
 import com.intellij.util.ui.UIUtil;
 import com.shellcheck.ShellcheckBundle;
-import com.shellcheck.utils.ShellcheckRunner;
+import com.shellcheck.utils.ShellcheckOptions;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -37,6 +36,10 @@ public class ShellcheckSettingsPage implements Configurable {
     private JLabel versionLabel;
     private JLabel shellcheckExeLabel;
     private TextFieldWithHistoryWithBrowseButton shellcheckExeField;
+    private JLabel scriptExtensionsLabel;
+    private JTextField scriptExtensionsField;
+    private JLabel checkOptionsLabel;
+    private JTextField checkOptionsField;
 
     public ShellcheckSettingsPage(@NotNull final Project project, @NotNull Settings settings) {
         this.project = project;
@@ -65,7 +68,9 @@ public class ShellcheckSettingsPage implements Configurable {
 
     private void setEnabledState(boolean enabled) {
         Stream.of(shellcheckExeField, shellcheckExeLabel,
-                treatAllIssuesCheckBox, highlightWholeLineCheckBox)
+                treatAllIssuesCheckBox, highlightWholeLineCheckBox,
+                scriptExtensionsLabel, scriptExtensionsField,
+                checkOptionsLabel, checkOptionsField)
                 .forEach(c -> c.setEnabled(enabled));
     }
 
@@ -73,15 +78,13 @@ public class ShellcheckSettingsPage implements Configurable {
         updateVersion(shellcheckExeField.getChildComponent().getText());
     }
     private void updateVersion(String shellcheckExe) {
-        String version = "n.a.";
-        if (ShellcheckFinder.validatePath(project, shellcheckExe)) {
-            try {
-                version = ShellcheckRunner.runVersion(shellcheckExe, Optional.ofNullable(project).map(Project::getBasePath).orElse("."));
-            } catch (ExecutionException e) {
-                version = "error";
+        versionLabel.setText("...");
+        String cwd = Optional.ofNullable(project).map(Project::getBasePath).orElse(".");
+        ShellcheckExecutableRegistry.getInstance().probe(shellcheckExe, cwd).thenAccept(executable -> UIUtil.invokeLaterIfNeeded(() -> {
+            if (shellcheckExe.equals(shellcheckExeField.getChildComponent().getText())) {
+                versionLabel.setText(executable.version);
             }
-        }
-        versionLabel.setText(version);
+        }));
     }
 
     private void initShellcheckField() {
@@ -119,11 +122,18 @@ public class ShellcheckSettingsPage implements Configurable {
         return pluginEnabledCheckbox.isSelected() != settings.pluginEnabled
                 || !shellcheckExeField.getChildComponent().getText().equals(settings.shellcheckExecutable)
                 || treatAllIssuesCheckBox.isSelected() != settings.treatAllIssuesAsWarnings
-                || highlightWholeLineCheckBox.isSelected() != settings.highlightWholeLine;
+                || highlightWholeLineCheckBox.isSelected() != settings.highlightWholeLine
+                || !scriptExtensionsField.getText().equals(settings.scriptExtensions)
+                || !checkOptionsField.getText().trim().equals(settings.checkOptions);
     }
 
     @Override
     public void apply() throws ConfigurationException {
+        try {
+            ShellcheckOptions.parse(checkOptionsField.getText());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(e.getMessage(), ShellcheckBundle.message("shellcheck.settings.check.options.invalid"));
+        }
         saveSettings();
     }
 
@@ -132,6 +142,8 @@ public class ShellcheckSettingsPage implements Configurable {
         settings.shellcheckExecutable = shellcheckExeField.getChildComponent().getText();
         settings.treatAllIssuesAsWarnings = treatAllIssuesCheckBox.isSelected();
         settings.highlightWholeLine = highlightWholeLineCheckBox.isSelected();
+        settings.scriptExtensions = scriptExtensionsField.getText();
+        settings.checkOptions = checkOptionsField.getText().trim();
     }
 
     private void loadSettings() {
@@ -139,6 +151,8 @@ public class ShellcheckSettingsPage implements Configurable {
         shellcheckExeField.getChildComponent().setText(settings.shellcheckExecutable);
         treatAllIssuesCheckBox.setSelected(settings.treatAllIssuesAsWarnings);
         highlightWholeLineCheckBox.setSelected(settings.highlightWholeLine);
+        scriptExtensionsField.setText(settings.scriptExtensions);
+        checkOptionsField.setText(settings.checkOptions);
         setEnabledState(settings.pluginEnabled);
     }
 
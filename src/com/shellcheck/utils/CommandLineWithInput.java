@@ -1,34 +1,45 @@
 package com.shellcheck.utils;
 
-import com.google.common.io.CharSource;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 
 public class CommandLineWithInput extends GeneralCommandLine {
+    private static final Logger LOG = Logger.getInstance(CommandLineWithInput.class);
 
-    private String input;
+    private CharSequence input;
 
-    public CommandLineWithInput withInput(String input) {
+    public CommandLineWithInput withInput(CharSequence input) {
         this.input = input;
         return this;
     }
 
+    /**
+     * Input is written on a background thread, so the caller can attach output readers right away
+     * and the process never blocks on full stdout or stderr pipes while its stdin is still being fed.
+     */
     @NotNull
     @Override
     public Process createProcess() throws ExecutionException {
         Process process = super.createProcess();
         if (input != null) {
+            writeInput(process, input);
+        }
+        return process;
+    }
+
+    static void writeInput(@NotNull Process process, @NotNull CharSequence input) {
+        ShellcheckProcess.IO_EXECUTOR.execute(() -> {
             try (OutputStream stdin = process.getOutputStream()) {
-                CharSource.wrap(input).asByteSource(StandardCharsets.UTF_8).copyTo(stdin);
+                Utf8Encoder.forCurrentThread().encode(input, stdin::write);
             } catch (IOException e) {
-                throw new RuntimeException(e);
+                // process destroyed or exited before reading everything
+                LOG.debug("Cannot write shellcheck input", e);
             }
-        }
-        return process;
+        });
     }
 }
@@ -0,0 +1,93 @@
+package com.shellcheck.utils;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops starting an executable that keeps failing. After {@value #FAILURE_THRESHOLD} failures in a row runs are
+ * refused for a backoff period; once it passes a single probe run decides whether the executable works again,
+ * and a failed probe doubles the backoff. Failures of runs that were already in flight while the circuit is open
+ * are counted but do not extend it. Executables are identified by their stamp, so replacing a broken binary
+ * starts with a fresh circuit.
+ */
+public final class ShellcheckCircuitBreaker {
+    private static final Logger LOG = Logger.getInstance(ShellcheckCircuitBreaker.class);
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(2L);
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5L);
+    private static final ShellcheckCircuitBreaker INSTANCE = new ShellcheckCircuitBreaker();
+
+    private final Map<String, Circuit> circuits = new HashMap<>();
+
+    private ShellcheckCircuitBreaker() {
+    }
+
+    @NotNull
+    public static ShellcheckCircuitBreaker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether a run may start now; a run allowed as a probe has to end in one of the record calls.
+     */
+    public synchronized boolean allowRun(@NotNull String executableStamp) {
+        Circuit circuit = circuits.get(executableStamp);
+        if (circuit == null || circuit.openUntil == 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() < circuit.openUntil || circuit.probing) {
+            return false;
+        }
+        circuit.probing = true;
+        return true;
+    }
+
+    /**
+     * Whether runs are refused or waiting for the probe run to decide.
+     */
+    public synchronized boolean isOpen(@NotNull String executableStamp) {
+        Circuit circuit = circuits.get(executableStamp);
+        return circuit != null && circuit.openUntil != 0;
+    }
+
+    public synchronized void recordSuccess(@NotNull String executableStamp) {
+        Circuit circuit = circuits.remove(executableStamp);
+        if (circuit != null && circuit.openUntil != 0) {
+            LOG.info("Shellcheck works again: " + executableStamp);
+        }
+    }
+
+    public synchronized void recordFailure(@NotNull String executableStamp) {
+        Circuit circuit = circuits.computeIfAbsent(executableStamp, stamp -> new Circuit());
+        circuit.failures++;
+        if (circuit.probing || circuit.openUntil == 0 && circuit.failures >= FAILURE_THRESHOLD) {
+            circuit.backoff = circuit.backoff == 0 ? INITIAL_BACKOFF : Math.min(2 * circuit.backoff, MAX_BACKOFF);
+            circuit.openUntil = System.currentTimeMillis() + circuit.backoff;
+            circuit.probing = false;
+            LOG.warn("Shellcheck failed " + circuit.failures + " times in a row, not running it for "
+                    + TimeUnit.MILLISECONDS.toSeconds(circuit.backoff) + "s: " + executableStamp);
+        }
+    }
+
+    /**
+     * The run ended without telling whether the executable works, e.g. it was cancelled.
+     */
+    public synchronized void recordAbandoned(@NotNull String executableStamp) {
+        Circuit circuit = circuits.get(executableStamp);
+        if (circuit != null) {
+            circuit.probing = false;
+        }
+    }
+
+    private static class Circuit {
+        private int failures;
+        private long backoff;
+        private long openUntil;
+        private boolean probing;
+    }
+}
@@ -0,0 +1,139 @@
+package com.shellcheck.utils;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues of every checked script of a project by path, saved to a file so the last known state is
+ * available right after a restart, before any script was checked again.
+ */
+public class ShellcheckIssueIndex {
+    private static final Logger LOG = Logger.getInstance(ShellcheckIssueIndex.class);
+
+    private static final int MAGIC = 0x53434b49;
+    private static final int FORMAT_VERSION = 2;
+
+    private final File file;
+    private final Map<String, List<ShellcheckResult.Issue>> issuesByPath = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    public ShellcheckIssueIndex(@NotNull File file) {
+        this.file = file;
+    }
+
+    public synchronized void load() {
+        issuesByPath.clear();
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String path = in.readUTF();
+                issuesByPath.put(path, ShellcheckResultStore.readIssues(in));
+            }
+        } catch (IOException e) {
+            LOG.info("Cannot read shellcheck issue index " + file + ": " + e.getMessage());
+            issuesByPath.clear();
+        }
+        modified = false;
+    }
+
+    public synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        modified = false;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            LOG.warn("Cannot create " + parent);
+            return;
+        }
+        Map<String, List<ShellcheckResult.Issue>> snapshot = getAll();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, List<ShellcheckResult.Issue>> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                ShellcheckResultStore.writeIssues(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot write shellcheck issue index " + file, e);
+        }
+    }
+
+    @Nullable
+    public List<ShellcheckResult.Issue> get(@NotNull String path) {
+        return issuesByPath.get(path);
+    }
+
+    /**
+     * @return whether the issues of the path changed
+     */
+    public boolean put(@NotNull String path, @NotNull List<ShellcheckResult.Issue> issues) {
+        List<ShellcheckResult.Issue> previous = issuesByPath.put(path, issues);
+        boolean changed = previous == null || !sameIssues(previous, issues);
+        modified |= changed;
+        return changed;
+    }
+
+    /**
+     * Removes the path and, for a directory, everything below it.
+     *
+     * @return whether anything was removed
+     */
+    public boolean remove(@NotNull String path) {
+        String prefix = path + "/";
+        boolean removed = issuesByPath.keySet().removeIf(key -> key.equals(path) || key.startsWith(prefix));
+        modified |= removed;
+        return removed;
+    }
+
+    public boolean retainAll(@NotNull Set<String> paths) {
+        boolean removed = issuesByPath.keySet().retainAll(paths);
+        modified |= removed;
+        return removed;
+    }
+
+    @NotNull
+    public SortedMap<String, List<ShellcheckResult.Issue>> getAll() {
+        return new TreeMap<>(issuesByPath);
+    }
+
+    private static boolean sameIssues(@NotNull List<ShellcheckResult.Issue> first, @NotNull List<ShellcheckResult.Issue> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            ShellcheckResult.Issue a = first.get(i);
+            ShellcheckResult.Issue b = second.get(i);
+            if (a.line != b.line || a.endLine != b.endLine || a.column != b.column || a.endColumn != b.endColumn
+                    || !Objects.equals(a.level, b.level) || !Objects.equals(a.code, b.code)
+                    || !Objects.equals(a.message, b.message)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
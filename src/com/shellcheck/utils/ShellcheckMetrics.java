@@ -0,0 +1,329 @@
+package com.shellcheck.utils;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Application wide timings and counters of shellcheck runs, shown in the Shellcheck Metrics tool window
+ * and exposed through JMX as {@value #OBJECT_NAME}. With the system property {@value #REPORT_PROPERTY} set
+ * to a file, the report is written there when the IDE exits, for scripted load runs.
+ */
+public final class ShellcheckMetrics implements ShellcheckMetricsMBean {
+    private static final Logger LOG = Logger.getInstance(ShellcheckMetrics.class);
+
+    private static final String OBJECT_NAME = "com.shellcheck:type=Metrics";
+    private static final String REPORT_PROPERTY = "shellcheck.metrics.report";
+    private static final int SLOWEST_RUNS = 10;
+    private static final ShellcheckMetrics INSTANCE = new ShellcheckMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            LOG.info("Cannot register shellcheck metrics MBean: " + e.getMessage());
+        }
+        String reportFile = System.getProperty(REPORT_PROPERTY);
+        if (reportFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> INSTANCE.writeReport(new File(reportFile)), "Shellcheck metrics report"));
+        }
+    }
+
+    private final Histogram spawn = new Histogram();
+    private final Histogram execution = new Histogram();
+    private final Histogram parse = new Histogram();
+    private final Histogram apply = new Histogram();
+    private final Histogram issues = new Histogram();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicInteger runningProcesses = new AtomicInteger();
+    private final AtomicInteger peakProcesses = new AtomicInteger();
+    private final List<SlowRun> slowestRuns = new ArrayList<>();
+
+    private ShellcheckMetrics() {
+    }
+
+    @NotNull
+    public static ShellcheckMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    void recordRun(@NotNull String file, long spawnNanos, long executionNanos, long parseNanos, int issueCount) {
+        runs.incrementAndGet();
+        spawn.record(toMicros(spawnNanos));
+        execution.record(toMicros(executionNanos));
+        parse.record(toMicros(parseNanos));
+        issues.record(issueCount);
+        long totalMillis = (spawnNanos + executionNanos + parseNanos) / 1_000_000;
+        synchronized (slowestRuns) {
+            slowestRuns.add(new SlowRun(file, totalMillis));
+            slowestRuns.sort(Comparator.comparingLong((SlowRun run) -> run.millis).reversed());
+            if (slowestRuns.size() > SLOWEST_RUNS) {
+                slowestRuns.remove(SLOWEST_RUNS);
+            }
+        }
+    }
+
+    /**
+     * Counts the process as running until it exits, whether it checks right away or waits in the warm pool.
+     */
+    void processStarted(@NotNull Process process) {
+        peakProcesses.accumulateAndGet(runningProcesses.incrementAndGet(), Math::max);
+        ShellcheckProcess.IO_EXECUTOR.execute(() -> {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                runningProcesses.decrementAndGet();
+            }
+        });
+    }
+
+    void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public void recordApply(long nanos) {
+        apply.record(toMicros(nanos));
+    }
+
+    public void recordCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet();
+    }
+
+    @NotNull
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Runs: ").append(runs.get())
+                .append(", timeouts: ").append(timeouts.get())
+                .append(", failures: ").append(failures.get()).append('\n');
+        report.append("Running processes: ").append(runningProcesses.get())
+                .append(", peak: ").append(peakProcesses.get())
+                .append(", heap used: ").append(usedHeap() >> 20).append(" MB")
+                .append(", peak: ").append(peakHeap() >> 20).append(" MB\n");
+        report.append("Cache hits: ").append(cacheHits.get())
+                .append(", misses: ").append(cacheMisses.get())
+                .append(String.format(", hit ratio: %.1f%%", 100 * getCacheHitRatio())).append("\n\n");
+        report.append(String.format("%-22s %10s %10s %10s %10s%n", "", "p50", "p90", "p99", "max"));
+        appendHistogram(report, "Spawn (ms)", spawn, 1000.0);
+        appendHistogram(report, "Execution (ms)", execution, 1000.0);
+        appendHistogram(report, "Parse after exit (ms)", parse, 1000.0);
+        appendHistogram(report, "Apply (ms)", apply, 1000.0);
+        appendHistogram(report, "Issues per run", issues, 1.0);
+        report.append("\nSlowest runs:\n");
+        synchronized (slowestRuns) {
+            for (SlowRun run : slowestRuns) {
+                report.append(String.format("%8d ms  %s%n", run.millis, run.file));
+            }
+        }
+        return report.toString();
+    }
+
+    private static void appendHistogram(@NotNull StringBuilder report, @NotNull String name, @NotNull Histogram histogram, double scale) {
+        report.append(String.format("%-22s %10.1f %10.1f %10.1f %10.1f%n", name,
+                histogram.percentile(0.5) / scale, histogram.percentile(0.9) / scale,
+                histogram.percentile(0.99) / scale, histogram.max() / scale));
+    }
+
+    private void writeReport(@NotNull File file) {
+        try {
+            Files.write(file.toPath(), getReport().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Cannot write shellcheck metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sum of the peak usages of the heap pools since the start; the pools may peak at different times, so this
+     * is an upper bound of the real peak, never below it.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1000;
+    }
+
+    @Override
+    public long getRunCount() {
+        return runs.get();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public int getPeakProcessCount() {
+        return peakProcesses.get();
+    }
+
+    @Override
+    public long getPeakHeapBytes() {
+        return peakHeap();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getSpawnMicrosP50() {
+        return spawn.percentile(0.5);
+    }
+
+    @Override
+    public long getSpawnMicrosP99() {
+        return spawn.percentile(0.99);
+    }
+
+    @Override
+    public long getExecutionMicrosP50() {
+        return execution.percentile(0.5);
+    }
+
+    @Override
+    public long getExecutionMicrosP99() {
+        return execution.percentile(0.99);
+    }
+
+    @Override
+    public long getParseMicrosP50() {
+        return parse.percentile(0.5);
+    }
+
+    @Override
+    public long getParseMicrosP99() {
+        return parse.percentile(0.99);
+    }
+
+    @Override
+    public long getApplyMicrosP50() {
+        return apply.percentile(0.5);
+    }
+
+    @Override
+    public long getApplyMicrosP99() {
+        return apply.percentile(0.99);
+    }
+
+    @Override
+    public long getIssuesP99() {
+        return issues.percentile(0.99);
+    }
+
+    @Override
+    public String getReportText() {
+        return getReport();
+    }
+
+    /**
+     * Log-linear buckets, four per power of two, so a percentile is off by at most a fifth of the value.
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(bucket(v));
+            total.incrementAndGet();
+            max.accumulateAndGet(v, Math::max);
+        }
+
+        long percentile(double fraction) {
+            long count = total.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) ((value >> (exponent - 2)) & (SUB_BUCKETS - 1));
+            return Math.min(BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + sub);
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+    }
+
+    private static class SlowRun {
+        private final String file;
+        private final long millis;
+
+        SlowRun(@NotNull String file, long millis) {
+            this.file = file;
+            this.millis = millis;
+        }
+    }
+}
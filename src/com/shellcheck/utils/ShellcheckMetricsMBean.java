@@ -0,0 +1,38 @@
+package com.shellcheck.utils;
+
+/**
+ * JMX view of {@link ShellcheckMetrics}; times are in microseconds.
+ */
+public interface ShellcheckMetricsMBean {
+    long getRunCount();
+
+    long getTimeoutCount();
+
+    long getFailureCount();
+
+    int getPeakProcessCount();
+
+    long getPeakHeapBytes();
+
+    double getCacheHitRatio();
+
+    long getSpawnMicrosP50();
+
+    long getSpawnMicrosP99();
+
+    long getExecutionMicrosP50();
+
+    long getExecutionMicrosP99();
+
+    long getParseMicrosP50();
+
+    long getParseMicrosP99();
+
+    long getApplyMicrosP50();
+
+    long getApplyMicrosP99();
+
+    long getIssuesP99();
+
+    String getReportText();
+}
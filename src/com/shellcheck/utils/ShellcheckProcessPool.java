@@ -0,0 +1,152 @@
+package com.shellcheck.utils;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Shellcheck processes started ahead of time for stdin checks. They block on their input until a check
+ * takes one, which hides the process and runtime start up from the check latency. Taking a process refills
+ * the pool in the background; processes of a replaced executable or settings are never handed out. Every
+ * command line, i.e. every set of options, has its own processes; past the total limit the processes of the
+ * least recently taken command lines are destroyed.
+ */
+final class ShellcheckProcessPool {
+    private static final Logger LOG = Logger.getInstance(ShellcheckProcessPool.class);
+
+    private final int size;
+    private final int maxProcesses;
+    private final Map<String, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param size         processes kept per command line
+     * @param maxProcesses processes kept in total, idle or starting
+     */
+    ShellcheckProcessPool(int size, int maxProcesses) {
+        this.size = size;
+        this.maxProcesses = Math.max(size, maxProcesses);
+    }
+
+    /**
+     * Takes a started process for the command line, which has to read the checked content from stdin.
+     * The command line is kept for refills and must not be changed afterwards.
+     */
+    @Nullable
+    synchronized Process take(@NotNull GeneralCommandLine commandLine) {
+        String cwd = String.valueOf(commandLine.getWorkDirectory());
+        String key = ShellcheckResultCache.executableStamp(commandLine.getExePath(), cwd) + "\u0000" + cwd + "\u0000"
+                + commandLine.getCommandLineString();
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot(k, executablePath(commandLine.getExePath(), cwd), cwd));
+        Process process = null;
+        while (process == null && !slot.idle.isEmpty()) {
+            Process candidate = slot.idle.poll();
+            if (candidate.isAlive()) {
+                process = candidate;
+            }
+        }
+        refill(commandLine, slot);
+        evict(slot);
+        return process;
+    }
+
+    /**
+     * Drops the processes of the executable started in the directory, whichever version of the executable
+     * started them; processes of other executables and directories, like those of other projects, stay.
+     */
+    synchronized void invalidate(@NotNull String shellcheckExe, @NotNull String cwd) {
+        String executablePath = executablePath(shellcheckExe, cwd);
+        Iterator<Slot> iterator = slots.values().iterator();
+        while (iterator.hasNext()) {
+            Slot slot = iterator.next();
+            if (slot.cwd.equals(cwd) && slot.executablePath.equals(executablePath)) {
+                slot.idle.forEach(Process::destroy);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void refill(@NotNull GeneralCommandLine commandLine, @NotNull Slot slot) {
+        int missing = size - slot.idle.size() - slot.starting;
+        if (missing <= 0) {
+            return;
+        }
+        slot.starting += missing;
+        for (int i = 0; i < missing; i++) {
+            ShellcheckProcess.IO_EXECUTOR.execute(() -> start(commandLine, slot));
+        }
+    }
+
+    /**
+     * Drops the least recently taken command lines, all their processes at once, until the total is within the
+     * limit; also drops command lines left without processes, e.g. after failed starts.
+     */
+    private void evict(@NotNull Slot current) {
+        int total = 0;
+        for (Slot slot : slots.values()) {
+            total += slot.idle.size() + slot.starting;
+        }
+        Iterator<Slot> iterator = slots.values().iterator();
+        while (iterator.hasNext()) {
+            Slot slot = iterator.next();
+            int processes = slot.idle.size() + slot.starting;
+            if (slot == current || processes > 0 && total <= maxProcesses) {
+                continue;
+            }
+            slot.idle.forEach(Process::destroy);
+            iterator.remove();
+            total -= processes;
+        }
+    }
+
+    private void start(@NotNull GeneralCommandLine commandLine, @NotNull Slot slot) {
+        Process process = null;
+        try {
+            process = commandLine.createProcess();
+            ShellcheckMetrics.getInstance().processStarted(process);
+        } catch (ExecutionException e) {
+            LOG.debug("Cannot start warm shellcheck process", e);
+        }
+        synchronized (this) {
+            slot.starting--;
+            if (process != null && slots.get(slot.key) == slot) {
+                slot.idle.add(process);
+                return;
+            }
+        }
+        if (process != null) {
+            process.destroy();
+        }
+    }
+
+    @NotNull
+    private static String executablePath(@NotNull String shellcheckExe, @NotNull String cwd) {
+        File file = new File(shellcheckExe);
+        return (file.isAbsolute() ? file : new File(cwd, shellcheckExe)).getAbsolutePath();
+    }
+
+    /**
+     * Processes of one command line; a slot removed by {@link #invalidate} or evicted takes no more processes.
+     */
+    private static final class Slot {
+        final String key;
+        final String executablePath;
+        final String cwd;
+        final Deque<Process> idle = new ArrayDeque<>();
+        int starting;
+
+        Slot(@NotNull String key, @NotNull String executablePath, @NotNull String cwd) {
+            this.key = key;
+            this.executablePath = executablePath;
+            this.cwd = cwd;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU of shellcheck results keyed by a digest of the checked content,
+ * the executable and the options it was called with.
+ */
+public class ShellcheckResultCache {
+    private final Map<String, ShellcheckResult> entries = new LinkedHashMap<String, ShellcheckResult>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ShellcheckResult> eldest) {
+            return size() > maxSize;
+        }
+    };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private int maxSize;
+
+    public ShellcheckResultCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+    }
+
+    @Nullable
+    public synchronized ShellcheckResult get(@NotNull String key) {
+        ShellcheckResult result = entries.get(key);
+        (result == null ? misses : hits).incrementAndGet();
+        return result;
+    }
+
+    public synchronized void put(@NotNull String key, @NotNull ShellcheckResult result) {
+        if (maxSize > 0) {
+            entries.put(key, result);
+        }
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        while (entries.size() > this.maxSize) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @NotNull
+    public static String key(@NotNull String executableStamp, @NotNull List<String> options, @NotNull byte[] content) {
+        MessageDigest digest = digest(executableStamp, options);
+        digest.update(content);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Same key as for the UTF-8 bytes of the text, computed without copying the text.
+     */
+    @NotNull
+    public static String key(@NotNull String executableStamp, @NotNull List<String> options, @NotNull CharSequence content) {
+        MessageDigest digest = digest(executableStamp, options);
+        try {
+            Utf8Encoder.forCurrentThread().encode(content, digest::update);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Identifies the executable by path, size and modification time, so an upgraded binary
+     * never serves results of the previous one and no version fork is needed.
+     */
+    @NotNull
+    public static String executableStamp(@NotNull String shellcheckExe, @NotNull String cwd) {
+        File file = new File(shellcheckExe);
+        if (!file.isAbsolute()) {
+            file = new File(cwd, shellcheckExe);
+        }
+        return fileStamp(file);
+    }
+
+    @NotNull
+    public static String fileStamp(@NotNull File file) {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    @NotNull
+    private static MessageDigest digest(@NotNull String executableStamp, @NotNull List<String> options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(executableStamp.getBytes(StandardCharsets.UTF_8));
+        for (String option : options) {
+            digest.update((byte) 0);
+            digest.update(option.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+        return digest;
+    }
+
+    @NotNull
+    private static String toHex(@NotNull byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,313 @@
+package com.shellcheck.utils;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of issue lists keyed like {@link ShellcheckResultCache}, so results survive IDE restarts.
+ * The header carries a stamp of the executable only; a different stamp discards the whole file. The options are
+ * part of every record key, so records of options no longer in use are not discarded but age out like any other.
+ * Live records are capped at {@link #MAX_LIVE_BYTES}: the least recently used ones are dropped and the file is
+ * compacted, least recently used first, once dead records outweigh live ones.
+ */
+public class ShellcheckResultStore {
+    private static final Logger LOG = Logger.getInstance(ShellcheckResultStore.class);
+
+    private static final int MAGIC = 0x53434b52;
+    private static final int FORMAT_VERSION = 2;
+    private static final long COMPACT_THRESHOLD = 1024 * 1024;
+    private static final long MAX_LIVE_BYTES = 16 * 1024 * 1024;
+
+    private final File file;
+    private final LinkedHashMap<String, Record> index = new LinkedHashMap<>(16, 0.75f, true);
+    private RandomAccessFile storage;
+    private String stamp;
+    private long liveBytes;
+
+    public ShellcheckResultStore(@NotNull File file) {
+        this.file = file;
+    }
+
+    @Nullable
+    public synchronized List<ShellcheckResult.Issue> get(@NotNull String stamp, @NotNull String key) {
+        if (!ensureOpen(stamp)) {
+            return null;
+        }
+        Record record = index.get(key);
+        if (record == null) {
+            return null;
+        }
+        try {
+            storage.seek(record.offset);
+            DataInput in = new DataInputStream(new ByteArrayInputStream(readRecord(storage)));
+            in.readUTF();
+            return readIssues(in);
+        } catch (IOException e) {
+            LOG.warn("Cannot read shellcheck result store " + file, e);
+            index.remove(key);
+            liveBytes -= record.size;
+            return null;
+        }
+    }
+
+    public synchronized void put(@NotNull String stamp, @NotNull String key, @NotNull List<ShellcheckResult.Issue> issues) {
+        if (!ensureOpen(stamp)) {
+            return;
+        }
+        try {
+            byte[] record = writeRecord(key, issues);
+            long offset = storage.length();
+            storage.seek(offset);
+            storage.writeInt(record.length);
+            storage.write(record);
+            Record previous = index.put(key, new Record(offset, 4 + record.length));
+            liveBytes += 4 + record.length - (previous != null ? previous.size : 0);
+            evictLeastRecentlyUsed();
+            if (storage.length() - liveBytes > Math.max(COMPACT_THRESHOLD, liveBytes)) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot write shellcheck result store " + file, e);
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        if (storage != null) {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                LOG.debug(e);
+            }
+            storage = null;
+        }
+        index.clear();
+        stamp = null;
+        liveBytes = 0;
+    }
+
+    private boolean ensureOpen(@NotNull String stamp) {
+        if (storage != null && stamp.equals(this.stamp)) {
+            return true;
+        }
+        close();
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent);
+            }
+            storage = new RandomAccessFile(file, "rw");
+            this.stamp = stamp;
+            if (!readHeader(stamp)) {
+                reset(stamp);
+            } else {
+                loadIndex();
+                if (storage.length() - liveBytes > Math.max(COMPACT_THRESHOLD, liveBytes)) {
+                    compact();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Cannot open shellcheck result store " + file, e);
+            close();
+            return false;
+        }
+    }
+
+    private boolean readHeader(@NotNull String stamp) throws IOException {
+        if (storage.length() == 0) {
+            return false;
+        }
+        try {
+            storage.seek(0);
+            return storage.readInt() == MAGIC && storage.readInt() == FORMAT_VERSION && stamp.equals(storage.readUTF());
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void reset(@NotNull String stamp) throws IOException {
+        index.clear();
+        liveBytes = 0;
+        storage.setLength(0);
+        storage.writeInt(MAGIC);
+        storage.writeInt(FORMAT_VERSION);
+        storage.writeUTF(stamp);
+    }
+
+    /**
+     * Records are read in file order, which compaction keeps least recently used first, so the access order
+     * of the index survives restarts.
+     */
+    private void loadIndex() throws IOException {
+        long offset = storage.getFilePointer();
+        long length = storage.length();
+        try {
+            while (offset < length) {
+                byte[] record = readRecord(storage);
+                String key = new DataInputStream(new ByteArrayInputStream(record)).readUTF();
+                Record previous = index.put(key, new Record(offset, 4 + record.length));
+                liveBytes += 4 + record.length - (previous != null ? previous.size : 0);
+                offset = storage.getFilePointer();
+            }
+        } catch (IOException e) {
+            LOG.info("Truncating damaged shellcheck result store " + file + " at " + offset);
+            storage.setLength(offset);
+        }
+        evictLeastRecentlyUsed();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<Record> records = index.values().iterator();
+        while (liveBytes > MAX_LIVE_BYTES && index.size() > 1) {
+            liveBytes -= records.next().size;
+            records.remove();
+        }
+    }
+
+    private void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        Map<String, Record> newIndex = new LinkedHashMap<>();
+        try (RandomAccessFile out = new RandomAccessFile(compacted, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(stamp);
+            for (Map.Entry<String, Record> entry : index.entrySet()) {
+                storage.seek(entry.getValue().offset);
+                byte[] record = readRecord(storage);
+                newIndex.put(entry.getKey(), new Record(out.getFilePointer(), 4 + record.length));
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        }
+        storage.close();
+        if (!file.delete() || !compacted.renameTo(file)) {
+            throw new IOException("Cannot replace " + file + " with compacted store");
+        }
+        storage = new RandomAccessFile(file, "rw");
+        index.clear();
+        index.putAll(newIndex);
+    }
+
+    private static final class Record {
+        final long offset;
+        final int size;
+
+        Record(long offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    @NotNull
+    private static byte[] readRecord(@NotNull RandomAccessFile in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > in.length() - in.getFilePointer()) {
+            throw new EOFException("Truncated record");
+        }
+        byte[] record = new byte[size];
+        in.readFully(record);
+        return record;
+    }
+
+    @NotNull
+    private static byte[] writeRecord(@NotNull String key, @NotNull List<ShellcheckResult.Issue> issues) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + issues.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        writeIssues(out, issues);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static void writeIssues(@NotNull DataOutput out, @NotNull List<ShellcheckResult.Issue> issues) throws IOException {
+        out.writeInt(issues.size());
+        for (ShellcheckResult.Issue issue : issues) {
+            out.writeInt(issue.line);
+            out.writeInt(issue.endLine);
+            out.writeInt(issue.column);
+            out.writeInt(issue.endColumn);
+            writeNullableString(out, issue.level);
+            writeNullableString(out, issue.code);
+            writeNullableString(out, issue.message);
+            out.writeBoolean(issue.singleColumnTabs);
+            List<ShellcheckResult.Replacement> replacements = issue.hasFix() ? issue.fix.replacements : Collections.emptyList();
+            out.writeInt(replacements.size());
+            for (ShellcheckResult.Replacement replacement : replacements) {
+                out.writeInt(replacement.line);
+                out.writeInt(replacement.endLine);
+                out.writeInt(replacement.column);
+                out.writeInt(replacement.endColumn);
+                out.writeInt(replacement.precedence);
+                writeNullableString(out, replacement.insertionPoint);
+                writeNullableString(out, replacement.replacement);
+            }
+        }
+    }
+
+    @NotNull
+    static List<ShellcheckResult.Issue> readIssues(@NotNull DataInput in) throws IOException {
+        int size = in.readInt();
+        List<ShellcheckResult.Issue> issues = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ShellcheckResult.Issue issue = new ShellcheckResult.Issue();
+            issue.line = in.readInt();
+            issue.endLine = in.readInt();
+            issue.column = in.readInt();
+            issue.endColumn = in.readInt();
+            issue.level = readNullableString(in);
+            issue.code = readNullableString(in);
+            issue.message = readNullableString(in);
+            issue.singleColumnTabs = in.readBoolean();
+            int replacementCount = in.readInt();
+            if (replacementCount > 0) {
+                issue.fix = new ShellcheckResult.Fix();
+                issue.fix.replacements = new ArrayList<>(replacementCount);
+                for (int j = 0; j < replacementCount; j++) {
+                    ShellcheckResult.Replacement replacement = new ShellcheckResult.Replacement();
+                    replacement.line = in.readInt();
+                    replacement.endLine = in.readInt();
+                    replacement.column = in.readInt();
+                    replacement.endColumn = in.readInt();
+                    replacement.precedence = in.readInt();
+                    replacement.insertionPoint = readNullableString(in);
+                    replacement.replacement = readNullableString(in);
+                    issue.fix.replacements.add(replacement);
+                }
+            }
+            issues.add(issue);
+        }
+        return issues;
+    }
+
+    private static void writeNullableString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(@NotNull DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
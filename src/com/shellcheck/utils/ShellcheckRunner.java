@@ -1,25 +1,33 @@
 package com.shellcheck.utils;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
-import com.intellij.execution.process.ColoredProcessHandler;
 import com.intellij.execution.process.OSProcessHandler;
 import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessOutput;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,31 +37,259 @@ public final class ShellcheckRunner {
 
     private static final Logger LOG = Logger.getInstance(ShellcheckRunner.class);
     private static final int TIME_OUT = (int) TimeUnit.SECONDS.toMillis(120L);
+    private static final int CANCEL_POLL_INTERVAL = 50;
+    private static final Map<String, LiveRun> LIVE_RUNS = new ConcurrentHashMap<>();
+    private static final ShellcheckProcessPool WARM_PROCESSES = new ShellcheckProcessPool(2, 8);
+    private static final ShellcheckCircuitBreaker CIRCUIT_BREAKER = ShellcheckCircuitBreaker.getInstance();
 
-    public static ShellcheckResult runCheck(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull String file, String content) {
+    /**
+     * @param options all options of the check, starting with {@link ShellcheckJson#checkOptions(boolean)}: sourced files are
+     *                followed, resolved against the working directory of the run, which is always the project directory
+     */
+    public static ShellcheckResult runCheck(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options, @NotNull String file,
+                                            CharSequence content) {
+        return runCheck(shellcheckExe, cwd, options, file, content, () -> false);
+    }
+
+    /**
+     * On-the-fly variant of {@link #runCheck(String, String, List, String, CharSequence)}: there is at most one live run per file content.
+     * The process is destroyed and {@link ProcessCanceledException} thrown as soon as the indicator is cancelled
+     * or a run for another version of the same file starts.
+     */
+    public static ShellcheckResult runCheck(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options, @NotNull String file,
+                                            CharSequence content, @Nullable ProgressIndicator indicator) {
+        return runLiveCheck(shellcheckExe, cwd, options, file, content, () -> indicator != null && indicator.isCanceled());
+    }
+
+    /**
+     * Queues a check on the application wide scheduler. Cancelling the returned future drops the queued check
+     * or destroys its running process. Foreground checks are live runs, like
+     * {@link #runCheck(String, String, List, String, CharSequence, ProgressIndicator)}.
+     */
+    @NotNull
+    public static CompletableFuture<ShellcheckResult> runCheckAsync(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options,
+                                                                    @NotNull String file, CharSequence content,
+                                                                    @NotNull ShellcheckScheduler.Priority priority) {
+        CompletableFuture<CompletableFuture<ShellcheckResult>> self = new CompletableFuture<>();
+        CompletableFuture<ShellcheckResult> future = ShellcheckScheduler.getInstance().submit(priority, () -> {
+            BooleanSupplier cancelled = () -> self.join().isCancelled();
+            return priority == ShellcheckScheduler.Priority.FOREGROUND
+                    ? runLiveCheck(shellcheckExe, cwd, options, file, content, cancelled)
+                    : runCheck(shellcheckExe, cwd, options, file, content, cancelled);
+        });
+        self.complete(future);
+        return future;
+    }
+
+    private static ShellcheckResult runLiveCheck(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options, @NotNull String file,
+                                                 CharSequence content, @NotNull BooleanSupplier cancelled) {
+        LiveRun run = new LiveRun(content, cancelled);
+        LiveRun previous = LIVE_RUNS.put(file, run);
+        if (previous != null && !StringUtil.equals(previous.content, content)) {
+            previous.superseded = true;
+        }
+        try {
+            return runCheck(shellcheckExe, cwd, options, file, content, run);
+        } finally {
+            LIVE_RUNS.remove(file, run);
+        }
+    }
+
+    /**
+     * Waits for a queued run, giving up and cancelling it when the indicator is cancelled.
+     */
+    public static <T> T await(@NotNull CompletableFuture<T> future, @Nullable ProgressIndicator indicator) {
+        try {
+            while (true) {
+                if (indicator != null && indicator.isCanceled()) {
+                    future.cancel(false);
+                    throw new ProcessCanceledException();
+                }
+                try {
+                    return future.get(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ignored) {
+                    // poll the indicator again
+                }
+            }
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw new ProcessCanceledException(e);
+        } catch (CancellationException e) {
+            throw new ProcessCanceledException(e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Like {@link #runCheck(String, String, List, String, CharSequence)}; the process is destroyed and
+     * {@link ProcessCanceledException} thrown once {@code cancelled} turns true.
+     */
+    public static ShellcheckResult runCheck(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options, @NotNull String file,
+                                            CharSequence content, @NotNull BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new ProcessCanceledException();
+        }
+        String executableStamp = ShellcheckResultCache.executableStamp(shellcheckExe, cwd);
+        if (!CIRCUIT_BREAKER.allowRun(executableStamp)) {
+            return ShellcheckResult.unavailable("Shellcheck is paused after repeated failures");
+        }
         ShellcheckResult result;
         try {
-            GeneralCommandLine commandLine = createCommandLine(shellcheckExe, cwd)
-                    .withInput(content)
-                    .withParameters("--format=json", content == null ? file : "-");
-            ProcessOutput out = execute(commandLine);
-            try {
-                result = new ShellcheckResult(parse(out.getStdout()), out.getStderr());
-            } catch (Exception e) {
-                result = new ShellcheckResult(out.getStdout());
+            List<ShellcheckResult.Issue> issues = new ArrayList<>();
+            long spawnStart = System.nanoTime();
+            ShellcheckProcess process = null;
+            if (content != null) {
+                options = getStdinOptions(options, file, content);
+                Process warm = WARM_PROCESSES.take(createCheckCommandLine(shellcheckExe, cwd, options, "-"));
+                if (warm != null) {
+                    CommandLineWithInput.writeInput(warm, content);
+                    process = ShellcheckProcess.attach(warm, issues::add);
+                }
             }
+            if (process == null) {
+                process = ShellcheckProcess.attach(start(createCheckCommandLine(shellcheckExe, cwd, options, content == null ? file : "-")
+                        .withInput(content)), issues::add);
+            }
+            boolean parsed = waitFor(process, cancelled);
+            long runNanos = System.nanoTime() - spawnStart;
+            if (parsed) {
+                result = new ShellcheckResult(issues, process.getStderr(), runNanos);
+                CIRCUIT_BREAKER.recordSuccess(executableStamp);
+            } else {
+                String stdout = process.getStdoutPrefix();
+                result = new ShellcheckResult(null, stdout.isEmpty() ? process.getStderr() : stdout, runNanos);
+                recordFailure(executableStamp);
+            }
+            recordRun(file, spawnStart, process, issues.size());
+        } catch (ProcessCanceledException e) {
+            CIRCUIT_BREAKER.recordAbandoned(executableStamp);
+            throw e;
         } catch (Exception e) {
-            LOG.error("Problem with running shellcheck", e);
+            LOG.warn("Problem with running shellcheck: " + e.getMessage());
+            LOG.debug(e);
+            recordFailure(executableStamp);
             result = new ShellcheckResult(e.toString());
         }
         return result;
     }
 
-    private static List<ShellcheckResult.Issue> parse(String json) {
-        Gson g = new GsonBuilder().create();
-        Type listType = new TypeToken<List<ShellcheckResult.Issue>>() {
-        }.getType();
-        return g.fromJson(json, listType);
+    /**
+     * Shellcheck takes the dialect of a file on disk without a shebang or shell directive from its extension;
+     * content read from stdin has no name, so that dialect is passed explicitly unless the options name one.
+     */
+    @NotNull
+    private static List<String> getStdinOptions(@NotNull List<String> options, @NotNull String file, @NotNull CharSequence content) {
+        String shell = ShellScripts.getExtensionShell(file);
+        if (shell == null || ShellScripts.declaresShell(content) || options.stream().anyMatch(option -> option.startsWith("--shell="))) {
+            return options;
+        }
+        List<String> stdinOptions = new ArrayList<>(options);
+        stdinOptions.add("--shell=" + shell);
+        return stdinOptions;
+    }
+
+    /**
+     * Whether runs of the executable are refused after repeated failures; they complete as unavailable then.
+     */
+    public static boolean isPaused(@NotNull String shellcheckExe, @NotNull String cwd) {
+        return CIRCUIT_BREAKER.isOpen(ShellcheckResultCache.executableStamp(shellcheckExe, cwd));
+    }
+
+    /**
+     * Checks several files on disk with a single shellcheck process and splits the issues per file; the files
+     * share the options. Any output on stderr fails the whole batch, so callers can fall back to {@link #runCheck}.
+     * Output that cannot be parsed and timeouts count as failures of the executable for the circuit breaker;
+     * the process is destroyed and {@link ProcessCanceledException} thrown once {@code cancelled} turns true.
+     */
+    @NotNull
+    public static Map<String, ShellcheckResult> runBatchCheck(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options,
+                                                              @NotNull List<String> files, @NotNull BooleanSupplier cancelled)
+            throws ExecutionException {
+        if (cancelled.getAsBoolean()) {
+            throw new ProcessCanceledException();
+        }
+        String executableStamp = ShellcheckResultCache.executableStamp(shellcheckExe, cwd);
+        if (!CIRCUIT_BREAKER.allowRun(executableStamp)) {
+            throw new ExecutionException("Shellcheck is paused after repeated failures");
+        }
+        GeneralCommandLine commandLine = createCommandLine(shellcheckExe, cwd)
+                .withParameters(options)
+                .withParameters(files);
+        long spawnStart = System.nanoTime();
+        ShellcheckBatchRun run;
+        boolean parsed;
+        try {
+            run = new ShellcheckBatchRun(start(commandLine), files);
+            parsed = waitFor(run.getProcess(), cancelled);
+        } catch (ProcessCanceledException e) {
+            CIRCUIT_BREAKER.recordAbandoned(executableStamp);
+            throw e;
+        } catch (ExecutionException e) {
+            recordFailure(executableStamp);
+            throw e;
+        }
+        recordRun(files.size() + " files in " + cwd, spawnStart, run.getProcess(), run.getIssueCount());
+        if (parsed) {
+            CIRCUIT_BREAKER.recordSuccess(executableStamp);
+        } else {
+            recordFailure(executableStamp);
+        }
+        try {
+            return run.getResults(parsed);
+        } catch (IOException e) {
+            throw new ExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Destroys the idle warm processes of the executable in the directory, e.g. when the executable, the settings
+     * or a {@code .shellcheckrc} of the project in the directory changed.
+     */
+    public static void invalidateWarmProcesses(@NotNull String shellcheckExe, @NotNull String cwd) {
+        WARM_PROCESSES.invalidate(shellcheckExe, cwd);
+    }
+
+    @NotNull
+    public static List<ShellcheckResult.Issue> parse(@NotNull String json) throws IOException {
+        List<ShellcheckResult.Issue> issues = new ArrayList<>();
+        ShellcheckJson.parse(new StringReader(json), issues::add);
+        return issues;
+    }
+
+    private static void recordFailure(@NotNull String executableStamp) {
+        ShellcheckMetrics.getInstance().recordFailure();
+        CIRCUIT_BREAKER.recordFailure(executableStamp);
+    }
+
+    private static void recordRun(@NotNull String file, long spawnStart, @NotNull ShellcheckProcess process, int issueCount) {
+        ShellcheckMetrics.getInstance().recordRun(file, process.getAttachedAt() - spawnStart,
+                process.getExecutionNanos(), process.getParseNanos(), issueCount);
+    }
+
+    @NotNull
+    private static Process start(@NotNull GeneralCommandLine commandLine) throws ExecutionException {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Running command: " + commandLine.getCommandLineString());
+        }
+        Process process = commandLine.createProcess();
+        ShellcheckMetrics.getInstance().processStarted(process);
+        return process;
+    }
+
+    private static boolean waitFor(@NotNull ShellcheckProcess process, @NotNull BooleanSupplier cancelled) throws ExecutionException {
+        try {
+            return process.waitFor(TIME_OUT, CANCEL_POLL_INTERVAL, cancelled);
+        } catch (CancellationException e) {
+            throw new ProcessCanceledException(e);
+        } catch (TimeoutException e) {
+            ShellcheckMetrics.getInstance().recordTimeout();
+            throw new ExecutionException(e.getMessage(), e);
+        }
     }
 
     @NotNull
@@ -73,6 +309,31 @@ public final class ShellcheckRunner {
         return "";
     }
 
+    /**
+     * Whether the executable knows the output format, checked on an empty script read from stdin.
+     */
+    public static boolean supportsFormat(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull String format) throws ExecutionException {
+        return supportsOption(shellcheckExe, cwd, "--format=" + format);
+    }
+
+    /**
+     * Whether the executable accepts the option, checked on an empty script read from stdin.
+     */
+    public static boolean supportsOption(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull String option) throws ExecutionException {
+        CommandLineWithInput commandLine = createCommandLine(shellcheckExe, cwd).withInput("");
+        commandLine.addParameters(option, "-");
+        return execute(commandLine).getExitCode() == 0;
+    }
+
+    @NotNull
+    private static CommandLineWithInput createCheckCommandLine(@NotNull String shellcheckExe, @NotNull String cwd, @NotNull List<String> options,
+                                                               @NotNull String file) {
+        CommandLineWithInput commandLine = createCommandLine(shellcheckExe, cwd);
+        commandLine.addParameters(options);
+        commandLine.addParameter(file);
+        return commandLine;
+    }
+
     @NotNull
     private static CommandLineWithInput createCommandLine(@NotNull String shellcheckExe, @NotNull String cwd) {
         CommandLineWithInput commandLine = new CommandLineWithInput();
@@ -85,7 +346,8 @@ public final class ShellcheckRunner {
     public static ProcessOutput execute(@NotNull GeneralCommandLine commandLine) throws ExecutionException {
         LOG.info("Running command: " + commandLine.getCommandLineString());
         Process process = commandLine.createProcess();
-        OSProcessHandler processHandler = new ColoredProcessHandler(process, commandLine.getCommandLineString(), StandardCharsets.UTF_8);
+        ShellcheckMetrics.getInstance().processStarted(process);
+        OSProcessHandler processHandler = new OSProcessHandler(process, commandLine.getCommandLineString(), StandardCharsets.UTF_8);
         final ProcessOutput output = new ProcessOutput();
         processHandler.addProcessListener(new ProcessAdapter() {
             public void onTextAvailable(ProcessEvent event, Key outputType) {
@@ -108,4 +370,20 @@ public final class ShellcheckRunner {
         }
         return output;
     }
-}
\ No newline at end of file
+
+    private static class LiveRun implements BooleanSupplier {
+        private final CharSequence content;
+        private final BooleanSupplier cancelled;
+        private volatile boolean superseded;
+
+        LiveRun(@Nullable CharSequence content, @NotNull BooleanSupplier cancelled) {
+            this.content = content;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            return superseded || cancelled.getAsBoolean();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Application wide queue of shellcheck runs. At most {@link #setMaxConcurrency max concurrency} runs execute
+ * at the same time, across all open projects; foreground runs for the visible editor go before background ones.
+ */
+public final class ShellcheckScheduler {
+    public enum Priority {
+        FOREGROUND, BACKGROUND
+    }
+
+    private static final ShellcheckScheduler INSTANCE = new ShellcheckScheduler();
+
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private final ExecutorService executor;
+    private long sequence;
+    private int running;
+    private int maxConcurrency = defaultConcurrency();
+
+    private ShellcheckScheduler() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Shellcheck runner " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @NotNull
+    public static ShellcheckScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxConcurrency maximum number of runs at the same time, the number of cores when not positive
+     */
+    public synchronized void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : defaultConcurrency();
+        dispatch();
+    }
+
+    public synchronized int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Queues the work; cancelling the returned future before the work started removes it from the queue.
+     */
+    @NotNull
+    public synchronized <T> CompletableFuture<T> submit(@NotNull Priority priority, @NotNull Supplier<T> work) {
+        Task<T> task = new Task<>(priority, sequence++, work);
+        queue.add(task);
+        dispatch();
+        return task.future;
+    }
+
+    private synchronized void dispatch() {
+        while (running < maxConcurrency && !queue.isEmpty()) {
+            Task<?> task = queue.poll();
+            if (task.future.isDone()) {
+                continue;
+            }
+            running++;
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finished();
+                }
+            });
+        }
+    }
+
+    private synchronized void finished() {
+        running--;
+        dispatch();
+    }
+
+    private static int defaultConcurrency() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static class Task<T> implements Comparable<Task<?>> {
+        private final Priority priority;
+        private final long sequence;
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(@NotNull Priority priority, long sequence, @NotNull Supplier<T> work) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.work = work;
+        }
+
+        void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(work.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(@NotNull Task<?> other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which scripts source which files, as far as shellcheck can follow them with {@code -x}: literal
+ * {@code source}/{@code .} paths and {@code # shellcheck source=} directives. Updated with the current content
+ * of every checked file, it tells which scripts have to be checked again when a sourced file changes.
+ */
+public class ShellcheckSourceGraph {
+    private static final Pattern SOURCE_DIRECTIVE = Pattern.compile("^\\s*#\\s*shellcheck\\s+(?:.*\\s)?source=(\\S+)");
+    private static final Pattern SOURCE_COMMAND = Pattern.compile("^\\s*(?:source|\\.)\\s+([\"']?)([^\"'\\s;&|]+)\\1(?:[\\s;&|]|$)");
+
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Map<String, Scan> scans = new ConcurrentHashMap<>();
+
+    /**
+     * Existing files sourced by the script. Relative paths are tried against the working directory first,
+     * like shellcheck does, then against the directory of the script.
+     */
+    @NotNull
+    public static List<String> findSources(@NotNull CharSequence content, @NotNull String filePath, @NotNull String cwd) {
+        return findSources(content, (matcher, lineStart, group) -> matcher.group(group), filePath, cwd);
+    }
+
+    /**
+     * Same as for the UTF-8 text of the bytes, scanned without decoding all of it: paths are decoded as they are found.
+     */
+    @NotNull
+    public static List<String> findSources(@NotNull byte[] content, @NotNull String filePath, @NotNull String cwd) {
+        return findSources(new ByteChars(content, 0, content.length), (matcher, lineStart, group) ->
+                new String(content, lineStart + matcher.start(group), matcher.end(group) - matcher.start(group), StandardCharsets.UTF_8),
+                filePath, cwd);
+    }
+
+    @NotNull
+    private static List<String> findSources(@NotNull CharSequence content, @NotNull GroupReader groups, @NotNull String filePath,
+                                            @NotNull String cwd) {
+        List<String> sources = new ArrayList<>();
+        String directive = null;
+        int lineStart = 0;
+        int length = content.length();
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && content.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            CharSequence line = content.subSequence(lineStart, lineEnd);
+
+            Matcher directiveMatcher = SOURCE_DIRECTIVE.matcher(line);
+            if (directiveMatcher.find()) {
+                directive = groups.read(directiveMatcher, lineStart, 1);
+            } else {
+                Matcher commandMatcher = SOURCE_COMMAND.matcher(line);
+                if (commandMatcher.find()) {
+                    String path = directive != null ? directive : groups.read(commandMatcher, lineStart, 2);
+                    String resolved = path.contains("$") || path.contains("`") ? null : resolve(path, filePath, cwd);
+                    if (resolved != null && !sources.contains(resolved)) {
+                        sources.add(resolved);
+                    }
+                }
+                if (!isBlank(line)) {
+                    directive = null;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return sources;
+    }
+
+    private static boolean isBlank(@NotNull CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static String resolve(@NotNull String path, @NotNull String filePath, @NotNull String cwd) {
+        File file = new File(path);
+        List<File> candidates = new ArrayList<>();
+        if (file.isAbsolute()) {
+            candidates.add(file);
+        } else {
+            candidates.add(new File(cwd, path));
+            File parent = new File(filePath).getParentFile();
+            if (parent != null) {
+                candidates.add(new File(parent, path));
+            }
+        }
+        for (File candidate : candidates) {
+            if (candidate.isFile()) {
+                return candidate.toPath().normalize().toString().replace(File.separatorChar, '/');
+            }
+        }
+        return null;
+    }
+
+    public synchronized void update(@NotNull String file, @NotNull Collection<String> sources) {
+        remove(file);
+        if (sources.isEmpty()) {
+            return;
+        }
+        dependencies.put(file, new HashSet<>(sources));
+        for (String source : sources) {
+            dependents.computeIfAbsent(source, s -> new HashSet<>()).add(file);
+        }
+    }
+
+    public synchronized void remove(@NotNull String file) {
+        scans.remove(file);
+        Set<String> previous = dependencies.remove(file);
+        if (previous != null) {
+            for (String source : previous) {
+                Set<String> users = dependents.get(source);
+                if (users != null) {
+                    users.remove(file);
+                    if (users.isEmpty()) {
+                        dependents.remove(source);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link ShellcheckResultCache#fileStamp File stamps} of the files a script with the direct sources sources, directly or
+     * through other sourced files, in a stable order. Sourced files are scanned from disk, again once their stamp changed,
+     * so libraries that are never checked themselves contribute their own sources; nothing is recorded in the graph.
+     */
+    @NotNull
+    public List<String> getSourceStamps(@NotNull String filePath, @NotNull List<String> sources, @NotNull String cwd) {
+        if (sources.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, String> stamps = new TreeMap<>();
+        Deque<String> queue = new ArrayDeque<>(sources);
+        while (!queue.isEmpty()) {
+            String source = queue.poll();
+            if (source.equals(filePath) || stamps.containsKey(source)) {
+                continue;
+            }
+            String stamp = ShellcheckResultCache.fileStamp(new File(source));
+            stamps.put(source, stamp);
+            queue.addAll(scan(source, stamp, cwd));
+        }
+        return new ArrayList<>(stamps.values());
+    }
+
+    @NotNull
+    private List<String> scan(@NotNull String source, @NotNull String stamp, @NotNull String cwd) {
+        Scan scan = scans.get(source);
+        if (scan == null || !scan.stamp.equals(stamp)) {
+            List<String> found;
+            try {
+                found = findSources(Files.readAllBytes(Paths.get(source)), source, cwd);
+            } catch (IOException e) {
+                found = Collections.emptyList();
+            }
+            scan = new Scan(stamp, found);
+            scans.put(source, scan);
+        }
+        return scan.sources;
+    }
+
+    /**
+     * Scripts sourcing the file, directly or through other sourced files.
+     */
+    @NotNull
+    public synchronized Set<String> getTransitiveDependents(@NotNull String file) {
+        return reachable(file, dependents);
+    }
+
+    @NotNull
+    private static Set<String> reachable(@NotNull String file, @NotNull Map<String, Set<String>> edges) {
+        if (!edges.containsKey(file)) {
+            return Collections.emptySet();
+        }
+        Set<String> reached = new TreeSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(file);
+        while (!queue.isEmpty()) {
+            for (String next : edges.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (!next.equals(file) && reached.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private interface GroupReader {
+        @NotNull
+        String read(@NotNull Matcher matcher, int lineStart, int group);
+    }
+
+    private static final class Scan {
+        final String stamp;
+        final List<String> sources;
+
+        Scan(@NotNull String stamp, @NotNull List<String> sources) {
+            this.stamp = stamp;
+            this.sources = sources;
+        }
+    }
+
+    /**
+     * Bytes as ISO-8859-1 characters: the patterns only match ASCII syntax, and multi-byte UTF-8 sequences stay
+     * at their byte offsets, where {@link GroupReader} decodes them.
+     */
+    private static final class ByteChars implements CharSequence {
+        private final byte[] bytes;
+        private final int start;
+        private final int end;
+
+        ByteChars(@NotNull byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[start + index] & 0xff);
+        }
+
+        @NotNull
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new ByteChars(bytes, start + from, start + to);
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
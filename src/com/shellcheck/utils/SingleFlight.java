@@ -0,0 +1,80 @@
+package com.shellcheck.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share one computation. Every caller gets its own future,
+ * the shared computation is cancelled only once all callers attached to it cancelled theirs.
+ */
+public final class SingleFlight<K, V> {
+    private final Map<K, Flight> flights = new HashMap<>();
+
+    @NotNull
+    public CompletableFuture<V> run(@NotNull K key, @NotNull Supplier<CompletableFuture<V>> computation) {
+        Flight flight;
+        synchronized (flights) {
+            flight = flights.get(key);
+            if (flight == null) {
+                flight = new Flight(key, computation.get());
+                flights.put(key, flight);
+                Flight started = flight;
+                started.future.whenComplete((result, error) -> {
+                    synchronized (flights) {
+                        flights.remove(key, started);
+                    }
+                });
+            }
+            flight.waiters++;
+        }
+        return flight.attach();
+    }
+
+    public int size() {
+        synchronized (flights) {
+            return flights.size();
+        }
+    }
+
+    private class Flight {
+        private final K key;
+        private final CompletableFuture<V> future;
+        private int waiters;
+
+        Flight(@NotNull K key, @NotNull CompletableFuture<V> future) {
+            this.key = key;
+            this.future = future;
+        }
+
+        @NotNull
+        CompletableFuture<V> attach() {
+            CompletableFuture<V> waiter = new CompletableFuture<>();
+            future.whenComplete((result, error) -> {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(result);
+                }
+            });
+            waiter.whenComplete((result, error) -> {
+                if (waiter.isCancelled()) {
+                    release();
+                }
+            });
+            return waiter;
+        }
+
+        private void release() {
+            synchronized (flights) {
+                if (--waiters == 0 && !future.isDone()) {
+                    future.cancel(false);
+                    flights.remove(key, this);
+                }
+            }
+        }
+    }
+}